@@ -58,6 +58,8 @@ public class Client extends Connection implements EndPoint {
 	private final Serialization serialization;
 	private Selector selector;
 	private int emptySelects;
+	private int udpDelay = -1;
+	private volatile boolean migrateUDP;
 	private volatile boolean tcpRegistered, udpRegistered;
 	private Object tcpRegistrationLock = new Object();
 	private Object udpRegistrationLock = new Object();
@@ -119,8 +121,19 @@ public class Client extends Connection implements EndPoint {
 		return serialization;
 	}
 
+	/** If true, every datagram sent to the server starts with a 12 byte header containing a token, a sequence number and a MAC
+	 * keyed by a secret the server sent over TCP, so the server keeps receiving UDP from this client when its address changes,
+	 * such as after a NAT rebinding or a switch between networks. The first datagram from a new address with a valid MAC and a
+	 * sequence newer than any the server has received moves the connection to that address, without a handshake. An older
+	 * datagram, such as one delayed in the network, cannot move it back. The client must send UDP (for example, the UDP keep
+	 * alive) for the server to learn the new address. Takes effect at the next connect. Default is false. */
+	public void setMigrateUDP (boolean migrateUDP) {
+		this.migrateUDP = migrateUDP;
+	}
+
 	public Kryo getKryo () {
-		return serialization instanceof KryoSerialization ? ((KryoSerialization)serialization).getKryo() : null;
+		KryoSerialization kryoSerialization = KryoSerialization.unwrap(serialization);
+		return kryoSerialization != null ? kryoSerialization.getKryo() : null;
 	}
 
 	/** Opens a TCP only client.
@@ -239,6 +252,8 @@ public class Client extends Connection implements EndPoint {
 		synchronized (updateLock) { // Blocks to avoid a select while the selector is used to bind the server connection.
 		}
 		long startTime = System.currentTimeMillis();
+		// Wake up in time to send paced datagrams.
+		if (udpDelay >= 0 && timeout > 0) timeout = Math.max(1, Math.min(timeout, udpDelay));
 		int select = 0;
 		if (timeout > 0) {
 			select = selector.select(timeout);
@@ -275,6 +290,8 @@ public class Client extends Connection implements EndPoint {
 									if (!tcpRegistered) {
 										if (object instanceof RegisterTCP) {
 											id = ((RegisterTCP)object).connectionID;
+											udpToken = ((RegisterTCP)object).udpToken;
+											udpKey = ((RegisterTCP)object).udpKey;
 											synchronized (tcpRegistrationLock) {
 												tcpRegistered = true;
 												tcpRegistrationLock.notifyAll();
@@ -288,6 +305,7 @@ public class Client extends Connection implements EndPoint {
 									if (udp != null && !udpRegistered) {
 										if (object instanceof RegisterUDP) {
 											synchronized (udpRegistrationLock) {
+												if (migrateUDP && udpKey != null) udp.token = new UdpToken(udpToken, udpKey);
 												udpRegistered = true;
 												udpRegistrationLock.notifyAll();
 												if (TRACE) trace("kryonet", this + " received UDP: RegisterUDP");
@@ -297,6 +315,7 @@ public class Client extends Connection implements EndPoint {
 												}
 												setConnected(true);
 											}
+											if (probeUdpMtu) startUdpMtuProbe();
 											notifyConnected();
 										}
 										continue;
@@ -313,14 +332,17 @@ public class Client extends Connection implements EndPoint {
 									notifyReceived(object);
 								}
 							} else {
-								if (udp.readFromAddress() == null) continue;
-								Object object = udp.readObject(this);
-								if (object == null) continue;
-								if (DEBUG) {
-									String objectString = object == null ? "null" : object.getClass().getSimpleName();
-									debug("kryonet", this + " received UDP: " + objectString);
+								// Read every datagram that is waiting, up to a limit so TCP is not starved.
+								for (int datagrams = 0; datagrams < UdpConnection.maxDatagramsPerRead; datagrams++) {
+									if (udp.readFromAddress() == null) break;
+									Object object = udp.readObject(this);
+									if (object == null) continue;
+									if (DEBUG) {
+										String objectString = object == null ? "null" : object.getClass().getSimpleName();
+										debug("kryonet", this + " received UDP: " + objectString);
+									}
+									notifyReceived(object);
 								}
-								notifyReceived(object);
 							}
 						}
 						if ((ops & SelectionKey.OP_WRITE) == SelectionKey.OP_WRITE) tcp.writeOperation();
@@ -330,13 +352,16 @@ public class Client extends Connection implements EndPoint {
 				}
 			}
 		}
+		udpDelay = -1;
 		if (isConnected) {
 			long time = System.currentTimeMillis();
 			if (tcp.isTimedOut(time)) {
 				if (DEBUG) debug("kryonet", this + " timed out.");
 				close();
-			} else
+			} else {
 				keepAlive();
+				if (udp != null) udpDelay = updateUdp(time);
+			}
 			if (isIdle()) notifyIdle();
 		}
 	}
@@ -0,0 +1,235 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** Wraps another serialization and compresses objects whose serialized size is at least the {@link #setThreshold(int) threshold}.
+ * Each object is preceded by a flag byte which is 0 if the bytes that follow are uncompressed, or 1 if they are compressed. A
+ * compressed object stores its uncompressed size as a varint, then the compressed bytes. Compression is only used when it makes
+ * the object smaller. Objects are serialized before they are compressed, so the uncompressed bytes must still fit in the write
+ * and object buffers.
+ * <p>
+ * Objects are compressed independently of each other, so this works for both TCP and UDP. The {@link Codec} state is reused for
+ * every object and a preset dictionary shared by both ends can be used to compress small objects well. Both ends of a connection
+ * must use the same codec and dictionary. */
+public class CompressingSerialization implements Serialization {
+	static private final byte RAW = 0, COMPRESSED = 1;
+
+	private final Serialization serialization;
+	private final Codec codec;
+	private int threshold = 256;
+	private byte[] uncompressed = new byte[0], compressed = new byte[0];
+	private ByteBuffer readBuffer = ByteBuffer.wrap(uncompressed);
+
+	/** Uses a {@link DeflateCodec} with the default compression level. */
+	public CompressingSerialization (Serialization serialization) {
+		this(serialization, new DeflateCodec());
+	}
+
+	public CompressingSerialization (Serialization serialization, Codec codec) {
+		if (serialization == null) throw new IllegalArgumentException("serialization cannot be null.");
+		if (codec == null) throw new IllegalArgumentException("codec cannot be null.");
+		this.serialization = serialization;
+		this.codec = codec;
+	}
+
+	/** Returns the serialization that is being compressed. */
+	public Serialization getSerialization () {
+		return serialization;
+	}
+
+	public Codec getCodec () {
+		return codec;
+	}
+
+	/** Objects that serialize to fewer bytes than this are not compressed. Only the sending side uses the threshold. Default is
+	 * 256. */
+	public void setThreshold (int threshold) {
+		if (threshold < 0) throw new IllegalArgumentException("threshold cannot be < 0: " + threshold);
+		this.threshold = threshold;
+	}
+
+	public int getThreshold () {
+		return threshold;
+	}
+
+	public synchronized void write (Connection connection, ByteBuffer buffer, Object object) {
+		int start = buffer.position();
+		buffer.put(RAW);
+		serialization.write(connection, buffer, object);
+		int end = buffer.position();
+		int length = end - start - 1;
+		if (length < threshold || length == 0) return;
+
+		if (uncompressed.length < length) {
+			uncompressed = new byte[length];
+			readBuffer = ByteBuffer.wrap(uncompressed);
+		}
+		if (compressed.length < length) compressed = new byte[length];
+		buffer.position(start + 1);
+		buffer.get(uncompressed, 0, length);
+
+		// Keep the uncompressed bytes unless compressing actually saves space.
+		int compressedLength = codec.compress(uncompressed, length, compressed);
+		if (compressedLength == -1 || compressedLength + varIntLength(length) >= length) {
+			buffer.position(end);
+			return;
+		}
+		buffer.position(start);
+		buffer.put(COMPRESSED);
+		writeVarInt(buffer, length);
+		buffer.put(compressed, 0, compressedLength);
+	}
+
+	public synchronized Object read (Connection connection, ByteBuffer buffer) {
+		byte flag = buffer.get();
+		if (flag == RAW) return serialization.read(connection, buffer);
+		if (flag != COMPRESSED) throw new KryoNetException("Invalid compression flag: " + flag);
+
+		int length = readVarInt(buffer);
+		// The uncompressed bytes had to fit in the sender's object buffer, so a larger length is corrupt and must not be allocated.
+		int maxLength = connection != null ? connection.tcp.readBuffer.capacity() : buffer.capacity();
+		if (length <= 0 || length > maxLength)
+			throw new KryoNetException("Invalid uncompressed object length: " + length + " (max " + maxLength + ")");
+		int compressedLength = buffer.remaining();
+		if (uncompressed.length < length) {
+			uncompressed = new byte[length];
+			readBuffer = ByteBuffer.wrap(uncompressed);
+		}
+		if (buffer.hasArray())
+			codec.decompress(buffer.array(), buffer.arrayOffset() + buffer.position(), compressedLength, uncompressed, length);
+		else {
+			if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+			buffer.get(compressed, 0, compressedLength);
+			codec.decompress(compressed, 0, compressedLength, uncompressed, length);
+		}
+		buffer.position(buffer.limit());
+
+		ByteBuffer readBuffer = this.readBuffer;
+		readBuffer.clear();
+		readBuffer.limit(length);
+		Object object;
+		if (serialization instanceof KryoSerialization) {
+			// The decompressed bytes are no longer in the TCP read buffer, so the TCP stream has to be identified here.
+			boolean tcp = connection != null && connection.tcp.readBuffer == buffer;
+			object = ((KryoSerialization)serialization).read(connection, readBuffer, tcp);
+		} else
+			object = serialization.read(connection, readBuffer);
+		if (readBuffer.hasRemaining())
+			throw new KryoNetException("Incorrect number of bytes (" + readBuffer.remaining()
+				+ " remaining) used to deserialize compressed object: " + object);
+		return object;
+	}
+
+	public int getLengthLength () {
+		return serialization.getLengthLength();
+	}
+
+	public void writeLength (ByteBuffer buffer, int length) {
+		serialization.writeLength(buffer, length);
+	}
+
+	public int readLength (ByteBuffer buffer) {
+		return serialization.readLength(buffer);
+	}
+
+	static private int varIntLength (int value) {
+		if (value >>> 7 == 0) return 1;
+		if (value >>> 14 == 0) return 2;
+		if (value >>> 21 == 0) return 3;
+		if (value >>> 28 == 0) return 4;
+		return 5;
+	}
+
+	static private void writeVarInt (ByteBuffer buffer, int value) {
+		while (value >>> 7 != 0) {
+			buffer.put((byte)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	static private int readVarInt (ByteBuffer buffer) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			result |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) return result;
+		}
+		throw new KryoNetException("Malformed compressed object length.");
+	}
+
+	/** Compresses and decompresses the bytes of a single object. Methods are only called by one thread at a time, so a codec can
+	 * reuse its internal state. */
+	static public interface Codec {
+		/** @return The number of compressed bytes written to the output array, or -1 if they do not fit. */
+		public int compress (byte[] input, int length, byte[] output);
+
+		/** Decompresses exactly length bytes into the output array.
+		 * @throws KryoNetException if the input is not valid. */
+		public void decompress (byte[] input, int offset, int inputLength, byte[] output, int length);
+	}
+
+	/** Compresses using raw deflate. The {@link Deflater} and {@link Inflater} are reused for every object. The compression level
+	 * can be {@link Deflater#BEST_SPEED} for a fast codec when CPU time matters more than size, or {@link Deflater#BEST_COMPRESSION}
+	 * when bandwidth is scarce. */
+	static public class DeflateCodec implements Codec {
+		private final Deflater deflater;
+		private final Inflater inflater = new Inflater(true);
+		private final byte[] dictionary;
+
+		public DeflateCodec () {
+			this(Deflater.DEFAULT_COMPRESSION, null);
+		}
+
+		/** @param level The compression level, 0-9 or -1 for the default.
+		 * @param dictionary A preset dictionary containing byte sequences likely to be seen in objects, such as class and field
+		 *           names or common strings. This helps most when objects are small. May be null. */
+		public DeflateCodec (int level, byte[] dictionary) {
+			deflater = new Deflater(level, true);
+			this.dictionary = dictionary;
+		}
+
+		public int compress (byte[] input, int length, byte[] output) {
+			deflater.reset();
+			if (dictionary != null) deflater.setDictionary(dictionary);
+			deflater.setInput(input, 0, length);
+			deflater.finish();
+			int compressedLength = deflater.deflate(output, 0, output.length);
+			return deflater.finished() ? compressedLength : -1;
+		}
+
+		public void decompress (byte[] input, int offset, int inputLength, byte[] output, int length) {
+			inflater.reset();
+			if (dictionary != null) inflater.setDictionary(dictionary);
+			inflater.setInput(input, offset, inputLength);
+			try {
+				int count = inflater.inflate(output, 0, length);
+				if (count != length) throw new KryoNetException("Decompressed " + count + " bytes, expected: " + length);
+			} catch (DataFormatException ex) {
+				throw new KryoNetException("Error decompressing object.", ex);
+			}
+		}
+	}
+}
@@ -25,9 +25,18 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.FrameworkMessage.AckUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.BatchUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FecUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentRequestUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.MtuProbeUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.Ping;
+import com.esotericsoftware.kryonet.FrameworkMessage.ReliableUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.SequencedUDP;
 
 import static com.esotericsoftware.minlog.Log.*;
 
@@ -42,7 +51,11 @@ public class Connection {
 	EndPoint endPoint;
 	TcpConnection tcp;
 	UdpConnection udp;
-	InetSocketAddress udpRemoteAddress;
+	volatile InetSocketAddress udpRemoteAddress;
+	int udpToken;
+	byte[] udpKey;
+	/** On the server, checks the {@link UdpToken} header of datagrams from a client that migrates UDP. */
+	UdpToken udpTokenCheck;
 	private Listener[] listeners = {};
 	private Object listenerLock = new Object();
 	private int lastPingID;
@@ -50,6 +63,18 @@ public class Connection {
 	private int returnTripTime;
 	volatile boolean isConnected;
 	volatile KryoNetException lastProtocolError;
+	PreparedMessageCache preparedMessageCache;
+	final ReliableUdp reliableUdp = new ReliableUdp(this);
+	private final Object sequencedLock = new Object();
+	private int[] sequencedSent = {}, sequencedReceived = {};
+	volatile UdpCoalescer coalescer;
+	final UdpFragmenter fragmenter = new UdpFragmenter(this);
+	volatile boolean fragmentUDP;
+	volatile int udpMtu = 1200;
+	volatile UdpPacer pacer;
+	final UdpFec fec = new UdpFec(this);
+	final UdpMtuProber mtuProber = new UdpMtuProber(this);
+	volatile boolean probeUdpMtu;
 
 	protected Connection () {
 	}
@@ -79,15 +104,17 @@ public class Connection {
    }
 
 	/** Sends the object over the network using TCP.
+	 * @param object May be a {@link PreparedMessage} to avoid serializing the object each time it is sent.
 	 * @return The number of bytes sent.
 	 * @see Kryo#register(Class, com.esotericsoftware.kryo.Serializer) */
 	public int sendTCP (Object object) {
 		if (object == null) throw new IllegalArgumentException("object cannot be null.");
 		try {
-			int length = tcp.send(this, object);
+			int length = tcp.send(this, prepare(object));
 			if (length == 0) {
 				if (TRACE) trace("kryonet", this + " TCP had nothing to send.");
 			} else if (DEBUG) {
+				if (object instanceof PreparedMessage) object = ((PreparedMessage)object).getObject();
 				String objectString = object == null ? "null" : object.getClass().getSimpleName();
 				if (!(object instanceof FrameworkMessage)) {
 					debug("kryonet", this + " sent TCP: " + objectString + " (" + length + ")");
@@ -108,11 +135,45 @@ public class Connection {
 	}
 
 	/** Sends the object over the network using UDP.
+	 * @param object May be a {@link PreparedMessage} to avoid serializing the object each time it is sent.
 	 * @return The number of bytes sent.
 	 * @see Kryo#register(Class, com.esotericsoftware.kryo.Serializer)
 	 * @throws IllegalStateException if this connection was not opened with both TCP and UDP. */
 	public int sendUDP (Object object) {
 		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		UdpCoalescer coalescer = this.coalescer;
+		if (coalescer != null) {
+			SocketAddress address = udpRemoteAddress;
+			if (address == null && udp != null) address = udp.connectedAddress;
+			if (address == null && isConnected) throw new IllegalStateException("Connection is not connected via UDP.");
+			if (address != null) {
+				try {
+					byte[] frame = udp.serialize(this, prepare(object));
+					if (!coalescer.add(frame)) return sendUDPNow(object, frame);
+					if (DEBUG) {
+						if (object instanceof PreparedMessage) object = ((PreparedMessage)object).getObject();
+						String objectString = object == null ? "null" : object.getClass().getSimpleName();
+						if (!(object instanceof FrameworkMessage)) {
+							debug("kryonet", this + " queued UDP: " + objectString + " (" + frame.length + ")");
+						} else if (TRACE) {
+							trace("kryonet", this + " queued UDP: " + objectString + " (" + frame.length + ")");
+						}
+					}
+					return frame.length;
+				} catch (KryoNetException ex) {
+					if (ERROR) error("kryonet", "Unable to send UDP with connection: " + this, ex);
+					close();
+					return 0;
+				}
+			}
+		}
+		return sendUDPNow(object, null);
+	}
+
+	/** Sends the object in its own datagram, bypassing the {@link #setCoalesceUDP(boolean) coalescer}. The object is
+	 * {@link #setFragmentUDP(boolean) fragmented} if necessary.
+	 * @param bytes The serialized object, or null. */
+	int sendUDPNow (Object object, byte[] bytes) {
 		SocketAddress address = udpRemoteAddress;
 		if (address == null && udp != null) address = udp.connectedAddress;
 		if (address == null && isConnected) throw new IllegalStateException("Connection is not connected via UDP.");
@@ -120,11 +181,22 @@ public class Connection {
 		try {
 			if (address == null) throw new SocketException("Connection is closed.");
 
-			int length = udp.send(this, object, address);
+			int length;
+			if (fragmentUDP || pacer != null || fec.groupSize > 0) {
+				if (bytes == null) bytes = udp.serialize(this, prepare(object));
+				if (fragmentUDP && bytes.length > getUdpPayloadSize())
+					length = sendFragments(fragmenter.split(bytes), address);
+				else
+					length = sendFrame(bytes, address);
+			} else if (bytes != null)
+				length = udp.send(bytes, address);
+			else
+				length = udp.send(this, prepare(object), address);
 			if (length == 0) {
 				if (TRACE) trace("kryonet", this + " UDP had nothing to send.");
 			} else if (DEBUG) {
 				if (length != -1) {
+					if (object instanceof PreparedMessage) object = ((PreparedMessage)object).getObject();
 					String objectString = object == null ? "null" : object.getClass().getSimpleName();
 					if (!(object instanceof FrameworkMessage)) {
 						debug("kryonet", this + " sent UDP: " + objectString + " (" + length + ")");
@@ -146,11 +218,289 @@ public class Connection {
 		}
 	}
 
+	/** @return The number of bytes sent, or -1 if the socket buffer was full. */
+	private int sendFragments (FragmentUDP[] fragments, SocketAddress address) throws IOException {
+		boolean direct = pacer == null && fec.groupSize == 0;
+		int length = 0;
+		for (int i = 0, n = fragments.length; i < n; i++) {
+			int sent = direct ? udp.send(this, fragments[i], address) : sendFrame(udp.serialize(this, fragments[i]), address);
+			if (sent == -1)
+				length = -1;
+			else if (length != -1) length += sent;
+		}
+		return length;
+	}
+
+	/** Sends serialized bytes in a single datagram, protected by {@link #setFecUDP(int, int) forward error correction} and
+	 * {@link #setPaceUDP(int) paced} if enabled.
+	 * @return The number of bytes sent, or -1 if the socket buffer was full. */
+	private int sendFrame (byte[] bytes, SocketAddress address) throws IOException {
+		if (fec.groupSize == 0) return sendPaced(bytes, address);
+		FecUDP[] messages = fec.add(bytes);
+		int length = sendPaced(udp.serialize(this, messages[0]), address);
+		for (int i = 1, n = messages.length; i < n; i++)
+			sendPaced(udp.serialize(this, messages[i]), address);
+		return length;
+	}
+
+	private int sendPaced (byte[] bytes, SocketAddress address) throws IOException {
+		UdpPacer pacer = this.pacer;
+		return pacer != null ? pacer.send(bytes) : udp.send(bytes, address);
+	}
+
+	/** Sends serialized bytes in a single datagram, bypassing the {@link #setPaceUDP(int) pacer}.
+	 * @return The number of bytes sent, or -1 if the socket buffer was full. */
+	int sendDatagram (byte[] bytes) throws IOException {
+		SocketAddress address = udpRemoteAddress;
+		if (address == null && udp != null) address = udp.connectedAddress;
+		if (address == null) throw new SocketException("Connection is closed.");
+		return udp.send(bytes, address);
+	}
+
+	/** Sends the object over the network using UDP on sequenced channel 0.
+	 * @see #sendSequencedUDP(Object, int) */
+	public int sendSequencedUDP (Object object) {
+		return sendSequencedUDP(object, 0);
+	}
+
+	/** Sends the object over the network using UDP with a sequence number for the channel. The remote end discards any object that
+	 * arrives after a newer object on the same channel, so objects may be lost but are never received out of order. This is useful
+	 * for state updates, where an old update is worse than none. Each channel is sequenced independently.
+	 * @param object May be a {@link PreparedMessage}, though the object is always serialized again.
+	 * @param channel A channel from 0 to 255.
+	 * @return The number of bytes sent.
+	 * @throws IllegalStateException if this connection was not opened with both TCP and UDP. */
+	public int sendSequencedUDP (Object object, int channel) {
+		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		if (channel < 0 || channel > 255) throw new IllegalArgumentException("channel must be >= 0 and <= 255: " + channel);
+		if (object instanceof PreparedMessage) object = ((PreparedMessage)object).getObject();
+		SequencedUDP message = new SequencedUDP();
+		message.channel = channel;
+		message.object = object;
+		synchronized (sequencedLock) {
+			if (sequencedSent.length <= channel) sequencedSent = resize(sequencedSent, channel + 1, 0);
+			message.sequence = sequencedSent[channel]++;
+		}
+		return sendUDP(message);
+	}
+
+	/** Returns true if the sequenced object is newer than any object received on its channel. */
+	private boolean receivedSequenced (SequencedUDP message) {
+		synchronized (sequencedLock) {
+			int channel = message.channel;
+			if (channel < 0 || channel > 255) return false;
+			if (sequencedReceived.length <= channel) sequencedReceived = resize(sequencedReceived, channel + 1, -1);
+			if (message.sequence - sequencedReceived[channel] <= 0) return false;
+			sequencedReceived[channel] = message.sequence;
+			return true;
+		}
+	}
+
+	static private int[] resize (int[] array, int size, int value) {
+		int[] newArray = new int[size];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		for (int i = array.length; i < size; i++)
+			newArray[i] = value;
+		return newArray;
+	}
+
+	/** Sends the object over the network using UDP, sending it again until the remote end acknowledges it. Objects sent with this
+	 * method are received in the order they were sent, but are not delayed by objects sent with other methods or by a lost TCP
+	 * packet. Retransmissions are sent during the {@link EndPoint#update(int) update}, so it should be called frequently. At most
+	 * 32 objects are unacknowledged and 1024 more are queued, after which the connection is closed.
+	 * @param object May be a {@link PreparedMessage}, though the object is always serialized again.
+	 * @return The number of bytes in the serialized object, or 0 if the connection was closed.
+	 * @see Kryo#register(Class, com.esotericsoftware.kryo.Serializer)
+	 * @throws IllegalStateException if this connection was not opened with both TCP and UDP. */
+	public int sendReliableUDP (Object object) {
+		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		SocketAddress address = udpRemoteAddress;
+		if (address == null && udp != null) address = udp.connectedAddress;
+		if (address == null && isConnected) throw new IllegalStateException("Connection is not connected via UDP.");
+
+		try {
+			if (address == null) throw new SocketException("Connection is closed.");
+
+			if (object instanceof PreparedMessage) object = ((PreparedMessage)object).getObject();
+			byte[] data = udp.serialize(this, object);
+			reliableUdp.send(data);
+			if (DEBUG) {
+				String objectString = object == null ? "null" : object.getClass().getSimpleName();
+				if (!(object instanceof FrameworkMessage)) {
+					debug("kryonet", this + " sent reliable UDP: " + objectString + " (" + data.length + ")");
+				} else if (TRACE) {
+					trace("kryonet", this + " sent reliable UDP: " + objectString + " (" + data.length + ")");
+				}
+			}
+			return data.length;
+		} catch (IOException ex) {
+			if (DEBUG) debug("kryonet", "Unable to send UDP with connection: " + this, ex);
+			close();
+			return 0;
+		} catch (KryoNetException ex) {
+			if (ERROR) error("kryonet", "Unable to send UDP with connection: " + this, ex);
+			close();
+			return 0;
+		}
+	}
+
+	/** If true, objects sent with UDP are collected and sent together in as few datagrams as possible, each no larger than the
+	 * {@link #getUdpMtu() MTU}. This saves the per datagram overhead when many small objects are sent at once. Collected objects
+	 * are sent when no more fit in a datagram, when {@link #flushUDP()} is called, and at the end of each
+	 * {@link EndPoint#update(int) update}. Default is false.
+	 * @throws IllegalStateException if the serialization is not {@link KryoSerialization}, since the datagram size is computed for
+	 *            its binary format. */
+	public void setCoalesceUDP (boolean coalesceUDP) {
+		UdpCoalescer coalescer = this.coalescer;
+		if (coalesceUDP) {
+			checkUdpFraming("UDP coalescing");
+			if (coalescer == null) this.coalescer = new UdpCoalescer(this);
+		} else if (coalescer != null) {
+			this.coalescer = null;
+			coalescer.flush();
+		}
+	}
+
+	/** Immediately sends any objects collected by the {@link #setCoalesceUDP(boolean) coalescer}. Calling this after sending the
+	 * objects for a game tick avoids waiting for the next {@link EndPoint#update(int) update}. */
+	public void flushUDP () {
+		UdpCoalescer coalescer = this.coalescer;
+		if (coalescer != null) coalescer.flush();
+	}
+
+	/** If true, objects sent with UDP that serialize to more bytes than the {@link #getUdpMtu() MTU} are split into fragments
+	 * which are reassembled by the remote end. This avoids relying on IP fragmentation, where losing any fragment loses the
+	 * object silently, and lets the remote end request only the fragments it is missing. Objects are still limited to the object
+	 * buffer size. Fragments are always reassembled, regardless of this setting. Default is false.
+	 * @throws IllegalStateException if the serialization is not {@link KryoSerialization}. */
+	public void setFragmentUDP (boolean fragmentUDP) {
+		if (fragmentUDP) checkUdpFraming("UDP fragmentation");
+		this.fragmentUDP = fragmentUDP;
+	}
+
+	/** If true, when some fragments of an object are not received, the missing fragments are requested once from the remote end.
+	 * Default is true.
+	 * @see #setFragmentUDP(boolean) */
+	public void setRerequestFragments (boolean rerequest) {
+		fragmenter.rerequest = rerequest;
+	}
+
+	/** Sets the largest datagram size in bytes that is used when objects are {@link #setCoalesceUDP(boolean) coalesced} or
+	 * {@link #setFragmentUDP(boolean) fragmented}. Default is 1200, which is small enough for almost every network path. */
+	public void setUdpMtu (int udpMtu) {
+		if (udpMtu < 64) throw new IllegalArgumentException("udpMtu must be >= 64: " + udpMtu);
+		this.udpMtu = udpMtu;
+	}
+
+	/** Returns the largest datagram size in bytes that is used when objects are coalesced or fragmented. This is the size found
+	 * by {@link #setProbeUdpMtu(boolean) probing}, if any, otherwise the size set by {@link #setUdpMtu(int)}. */
+	public int getUdpMtu () {
+		return udpMtu;
+	}
+
+	/** If true, after UDP is registered, padded probes are sent to find the largest datagram that reaches the remote end, and the
+	 * {@link #getUdpMtu() MTU} is set to that size. If only a 548 byte probe arrives, the MTU is set to 548. The MTU set by
+	 * {@link #setUdpMtu(int)} is kept until probing finishes, or if no probe arrives at all. Probes are no larger than 1472 bytes,
+	 * the most that fits in an Ethernet frame, or the object buffer size. Probing takes a few round trips and is done during
+	 * {@link EndPoint#update(int) updates}. Default is false. */
+	public void setProbeUdpMtu (boolean probeUdpMtu) {
+		this.probeUdpMtu = probeUdpMtu;
+	}
+
+	/** Returns true if {@link #setProbeUdpMtu(boolean) probing} for the MTU has not finished. */
+	public boolean isProbingUdpMtu () {
+		return mtuProber.isProbing();
+	}
+
+	void startUdpMtuProbe () {
+		mtuProber.start(Math.min(UdpMtuProber.maxSize, udp.readBuffer.capacity()));
+	}
+
+	/** Returns a probe which serializes to the specified number of bytes. */
+	private byte[] mtuProbe (int size) {
+		MtuProbeUDP probe = new MtuProbeUDP();
+		probe.size = size;
+		// The token header, if any, is written in front of the probe.
+		if (udp.token != null) size -= UdpToken.length;
+		probe.padding = new byte[Math.max(0, size - 8)];
+		// The padding's length prefix can change size, so adjust until the size is exact.
+		for (int i = 0; i < 3; i++) {
+			byte[] bytes = udp.serialize(this, probe);
+			if (bytes.length == size) return bytes;
+			probe.padding = new byte[Math.max(0, probe.padding.length + size - bytes.length)];
+		}
+		return udp.serialize(this, probe);
+	}
+
+	/** If greater than zero, datagrams sent by this connection are paced so they are spread over time rather than sent in bursts.
+	 * The send rate starts at a quarter of the maximum and adapts to congestion: it is halved when loss is detected and otherwise
+	 * grows toward the maximum while the rate limits sending. Loss is detected when the socket send buffer is full, when
+	 * {@link #sendReliableUDP(Object) reliable UDP} objects are sent again, and when the remote end requests missing
+	 * {@link #setFragmentUDP(boolean) fragments}. Datagrams that cannot be sent yet are queued, up to one second at the maximum
+	 * rate, and sent during later {@link EndPoint#update(int) updates}. Default is 0.
+	 * @param maxBytesPerSecond 0 to disable pacing, otherwise at least 16384. */
+	public void setPaceUDP (int maxBytesPerSecond) {
+		UdpPacer.validate(maxBytesPerSecond);
+		pacer = maxBytesPerSecond == 0 ? null : new UdpPacer(this, maxBytesPerSecond, maxBytesPerSecond);
+	}
+
+	/** If groupSize is greater than zero, datagrams are sent in groups of that size, each followed by parityCount parity
+	 * datagrams. The remote end rebuilds a lost datagram from the rest of its group and the parity, without waiting for a
+	 * retransmission. Each parity covers every parityCount'th datagram of the group, so up to parityCount datagrams can be rebuilt
+	 * per group if they are not covered by the same parity. This trades bandwidth for latency on lossy links: a group size of 5
+	 * with 1 parity sends 20% more data. A partial group's parity is sent at an {@link EndPoint#update(int) update} once the group
+	 * is 50 milliseconds old. Datagrams are always rebuilt when received, regardless of this setting. Default is 0.
+	 * @param groupSize 0 to disable, otherwise from 2 to 64.
+	 * @param parityCount From 1 to groupSize - 1.
+	 * @throws IllegalStateException if the serialization is not {@link KryoSerialization}. */
+	public void setFecUDP (int groupSize, int parityCount) {
+		if (groupSize > 0) checkUdpFraming("UDP forward error correction");
+		fec.setGroupSize(groupSize, parityCount);
+	}
+
+	/** The datagrams that wrap other objects are sized using fixed overheads which only hold for the binary format of
+	 * {@link KryoSerialization}. Other serializations, such as JSON, would produce datagrams larger than the MTU. */
+	private void checkUdpFraming (String feature) {
+		if (KryoSerialization.unwrap(tcp.serialization) == null)
+			throw new IllegalStateException(feature + " requires KryoSerialization.");
+	}
+
+	/** Returns the largest serialized object that fits in a datagram of the {@link #getUdpMtu() MTU} size. */
+	int getUdpPayloadSize () {
+		int size = fec.groupSize > 0 ? udpMtu - UdpFec.overhead : udpMtu;
+		UdpConnection udp = this.udp;
+		return udp != null && udp.token != null ? size - UdpToken.length : size;
+	}
+
+	/** Returns the current UDP send rate in bytes per second, or 0 if UDP is not {@link #setPaceUDP(int) paced}. */
+	public int getUdpSendRate () {
+		UdpPacer pacer = this.pacer;
+		return pacer == null ? 0 : pacer.getRate();
+	}
+
+	/** Returns the cached prepared message for the object, if any. */
+	private Object prepare (Object object) {
+		PreparedMessageCache preparedMessageCache = this.preparedMessageCache;
+		if (preparedMessageCache == null || object instanceof PreparedMessage || object instanceof FrameworkMessage) return object;
+		PreparedMessage message = preparedMessageCache.get(object);
+		return message != null ? message : object;
+	}
+
 	public void close () {
 		boolean wasConnected = isConnected;
 		isConnected = false;
 		tcp.close();
 		if (udp != null && udp.connectedAddress != null) udp.close();
+		reliableUdp.reset();
+		fragmenter.reset();
+		mtuProber.reset();
+		UdpPacer pacer = this.pacer;
+		if (pacer != null) pacer.reset();
+		fec.reset();
+		synchronized (sequencedLock) {
+			sequencedSent = new int[0];
+			sequencedReceived = new int[0];
+		}
 		if (wasConnected) {
 			notifyDisconnected();
 			if (INFO) info("kryonet", this + " disconnected.");
@@ -257,6 +607,139 @@ public class Connection {
 	}
 
 	void notifyReceived (Object object) {
+		if (object instanceof ReliableUDP) {
+			ArrayList<byte[]> deliver = reliableUdp.received((ReliableUDP)object);
+			if (deliver != null) {
+				for (int i = 0, n = deliver.size(); i < n; i++) {
+					Object reliableObject;
+					try {
+						reliableObject = udp.deserialize(this, deliver.get(i));
+					} catch (KryoNetException ex) {
+						if (ERROR) error("kryonet", "Error reading reliable UDP from connection: " + this, ex);
+						continue;
+					}
+					if (DEBUG) {
+						String objectString = reliableObject == null ? "null" : reliableObject.getClass().getSimpleName();
+						if (!(reliableObject instanceof FrameworkMessage)) {
+							debug("kryonet", this + " received reliable UDP: " + objectString);
+						} else if (TRACE) {
+							trace("kryonet", this + " received reliable UDP: " + objectString);
+						}
+					}
+					notifyReceived(reliableObject);
+				}
+			}
+			return;
+		}
+		if (object instanceof BatchUDP) {
+			byte[][] frames = ((BatchUDP)object).frames;
+			for (int i = 0, n = frames.length; i < n; i++) {
+				Object frameObject;
+				try {
+					frameObject = udp.deserialize(this, frames[i]);
+				} catch (KryoNetException ex) {
+					if (ERROR) error("kryonet", "Error reading UDP from connection: " + this, ex);
+					continue;
+				}
+				if (DEBUG) {
+					String objectString = frameObject == null ? "null" : frameObject.getClass().getSimpleName();
+					if (!(frameObject instanceof FrameworkMessage)) {
+						debug("kryonet", this + " received UDP: " + objectString);
+					} else if (TRACE) {
+						trace("kryonet", this + " received UDP: " + objectString);
+					}
+				}
+				notifyReceived(frameObject);
+			}
+			return;
+		}
+		if (object instanceof FragmentUDP) {
+			byte[] bytes = fragmenter.received((FragmentUDP)object, udp.readBuffer.capacity(), System.currentTimeMillis());
+			if (bytes == null) return;
+			try {
+				object = udp.deserialize(this, bytes);
+			} catch (KryoNetException ex) {
+				if (ERROR) error("kryonet", "Error reading UDP fragments from connection: " + this, ex);
+				return;
+			}
+			if (DEBUG) {
+				String objectString = object == null ? "null" : object.getClass().getSimpleName();
+				if (!(object instanceof FrameworkMessage)) {
+					debug("kryonet", this + " received fragmented UDP: " + objectString + " (" + bytes.length + ")");
+				} else if (TRACE) {
+					trace("kryonet", this + " received fragmented UDP: " + objectString + " (" + bytes.length + ")");
+				}
+			}
+			notifyReceived(object);
+			return;
+		}
+		if (object instanceof FecUDP) {
+			ArrayList<byte[]> frames = fec.received((FecUDP)object);
+			if (frames == null) return;
+			for (int i = 0, n = frames.size(); i < n; i++) {
+				Object frameObject;
+				try {
+					frameObject = udp.deserialize(this, frames.get(i));
+				} catch (KryoNetException ex) {
+					if (ERROR) error("kryonet", "Error reading UDP from connection: " + this, ex);
+					continue;
+				}
+				if (DEBUG) {
+					String objectString = frameObject == null ? "null" : frameObject.getClass().getSimpleName();
+					if (!(frameObject instanceof FrameworkMessage)) {
+						debug("kryonet", this + " received UDP: " + objectString);
+					} else if (TRACE) {
+						trace("kryonet", this + " received UDP: " + objectString);
+					}
+				}
+				notifyReceived(frameObject);
+			}
+			return;
+		}
+		if (object instanceof MtuProbeUDP) {
+			MtuProbeUDP probe = (MtuProbeUDP)object;
+			if (probe.isReply)
+				mtuProber.acknowledged(probe);
+			else {
+				MtuProbeUDP reply = new MtuProbeUDP();
+				reply.size = probe.size;
+				reply.isReply = true;
+				sendTCP(reply);
+			}
+			return;
+		}
+		if (object instanceof FragmentRequestUDP) {
+			// The remote end lost fragments.
+			UdpPacer pacer = this.pacer;
+			if (pacer != null) pacer.lost(System.currentTimeMillis());
+			ArrayList<FragmentUDP> fragments = fragmenter.requested((FragmentRequestUDP)object);
+			if (fragments != null) {
+				if (TRACE) trace("kryonet", this + " resending UDP fragments: " + fragments.size());
+				for (int i = 0, n = fragments.size(); i < n; i++)
+					sendUDPNow(fragments.get(i), null);
+			}
+			return;
+		}
+		if (object instanceof AckUDP) {
+			reliableUdp.acknowledged((AckUDP)object);
+			return;
+		}
+		if (object instanceof SequencedUDP) {
+			SequencedUDP message = (SequencedUDP)object;
+			if (!receivedSequenced(message)) {
+				if (TRACE) trace("kryonet", this + " discarded stale sequenced UDP: " + message.sequence + " (" + message.channel + ")");
+				return;
+			}
+			object = message.object;
+			if (DEBUG) {
+				String objectString = object == null ? "null" : object.getClass().getSimpleName();
+				if (!(object instanceof FrameworkMessage)) {
+					debug("kryonet", this + " received sequenced UDP: " + objectString);
+				} else if (TRACE) {
+					trace("kryonet", this + " received sequenced UDP: " + objectString);
+				}
+			}
+		}
 		if (object instanceof Ping) {
 			Ping ping = (Ping)object;
 			if (ping.isReply) {
@@ -274,6 +757,41 @@ public class Connection {
 			listeners[i].received(this, object);
 	}
 
+	/** Performs periodic UDP work, such as resending unacknowledged reliable objects and sending coalesced objects. Called by the
+	 * update thread.
+	 * @return The milliseconds until paced datagrams can be sent, or -1 if none are waiting. */
+	int updateUdp (long time) {
+		reliableUdp.update(time);
+		ArrayList<FragmentRequestUDP> requests = fragmenter.update(time);
+		if (requests != null) {
+			for (int i = 0, n = requests.size(); i < n; i++)
+				sendUDP(requests.get(i));
+		}
+		UdpCoalescer coalescer = this.coalescer;
+		if (coalescer != null) coalescer.flush();
+		try {
+			int probeSize = mtuProber.update(time, Math.max(reliableUdp.getRoundTripTime(), returnTripTime));
+			if (probeSize != -1) sendDatagram(mtuProbe(probeSize));
+			FecUDP[] parity = fec.update(time);
+			if (parity != null) {
+				SocketAddress address = udpRemoteAddress != null ? udpRemoteAddress : udp.connectedAddress;
+				for (int i = 0, n = parity.length; i < n; i++)
+					sendPaced(udp.serialize(this, parity[i]), address);
+			}
+			UdpPacer pacer = this.pacer;
+			if (pacer == null) return -1;
+			return pacer.update(time, reliableUdp.getRoundTripTime());
+		} catch (KryoNetException ex) {
+			if (ERROR) error("kryonet", "Unable to send UDP with connection: " + this, ex);
+			close();
+			return -1;
+		} catch (IOException ex) {
+			if (DEBUG) debug("kryonet", "Unable to send UDP with connection: " + this, ex);
+			close();
+			return -1;
+		}
+	}
+
 	/** Returns the local {@link Client} or {@link Server} to which this connection belongs. */
 	public EndPoint getEndPoint () {
 		return endPoint;
@@ -305,6 +823,14 @@ public class Connection {
 		tcp.bufferPositionFix = bufferPositionFix;
 	}
 
+	/** Sets the cache used to avoid serializing an object again when the same object instance is sent more than once. Objects sent
+	 * on a connection with a cache must not be modified after they are sent, unless they are
+	 * {@link PreparedMessageCache#remove(Object) removed} from the cache. Framework messages are never cached.
+	 * @param preparedMessageCache May be null to disable caching (the default). */
+	public void setPreparedMessageCache (PreparedMessageCache preparedMessageCache) {
+		this.preparedMessageCache = preparedMessageCache;
+	}
+
 	/** Sets the friendly name of this connection. This is returned by {@link #toString()} and is useful for providing application
 	 * specific identifying information in the logging. May be null for the default name of "Connection X", where X is the
 	 * connection ID. */
@@ -0,0 +1,158 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryonet.util.ObjectIntMap;
+
+/** Remembers the most recently transmitted strings and dictionary objects for one direction of a TCP connection so they can be
+ * replaced by a short back-reference when they are transmitted again. Both ends add values in the order they appear in the
+ * stream, so the tables stay in step without any extra communication. Values are evicted first in, first out once the table is
+ * full.
+ * @see KryoSerialization#setDictionarySize(int) */
+class ConnectionDictionary {
+	final Table strings, objects;
+
+	public ConnectionDictionary (int size) {
+		strings = new Table(size);
+		objects = new Table(size);
+	}
+
+	static class Table {
+		final Object[] values;
+		final ObjectIntMap valueToIndex;
+		int next;
+
+		public Table (int size) {
+			values = new Object[size];
+			valueToIndex = new ObjectIntMap(size);
+		}
+
+		/** Returns the index of the value, or -1 if the value is not in the table. */
+		public int indexOf (Object value) {
+			return valueToIndex.get(value, -1);
+		}
+
+		public Object get (int index) {
+			if (index >= values.length) throw new KryoNetException("Invalid dictionary index: " + index);
+			Object value = values[index];
+			if (value == null) throw new KryoNetException("Dictionary out of sync, no value for index: " + index);
+			return value;
+		}
+
+		/** Adds the value, evicting the oldest value if the table is full. Only the writing side uses the reverse lookup. */
+		public void add (Object value, boolean writing) {
+			int index = next;
+			Object old = values[index];
+			if (writing) {
+				if (old != null) valueToIndex.remove(old, -1);
+				valueToIndex.put(value, index);
+			}
+			values[index] = value;
+			next = index + 1 == values.length ? 0 : index + 1;
+		}
+	}
+
+	/** Writes strings as a back-reference when they are in the dictionary. A varint of 0 is followed by the string, otherwise the
+	 * varint is the dictionary index + 1. */
+	static class DictionaryOutput extends ByteBufferOutput {
+		ConnectionDictionary dictionary;
+
+		public void writeString (String value) {
+			ConnectionDictionary dictionary = this.dictionary;
+			if (dictionary == null) {
+				super.writeString(value);
+				return;
+			}
+			if (value == null || value.length() == 0) {
+				writeByte(0);
+				super.writeString(value);
+				return;
+			}
+			Table strings = dictionary.strings;
+			int index = strings.indexOf(value);
+			if (index != -1) {
+				writeInt(index + 1, true);
+				return;
+			}
+			writeByte(0);
+			super.writeString(value);
+			strings.add(value, true);
+		}
+	}
+
+	static class DictionaryInput extends ByteBufferInput {
+		ConnectionDictionary dictionary;
+
+		public String readString () {
+			ConnectionDictionary dictionary = this.dictionary;
+			if (dictionary == null) return super.readString();
+			int index = readInt(true);
+			if (index != 0) return (String)dictionary.strings.get(index - 1);
+			String value = super.readString();
+			if (value != null && value.length() > 0) dictionary.strings.add(value, false);
+			return value;
+		}
+	}
+
+	/** Wraps the serializer for an immutable type so values equal to a recently transmitted value are written as a back-reference.
+	 * The type must implement equals and hashCode. */
+	static class DictionarySerializer extends Serializer {
+		private final Serializer serializer;
+
+		public DictionarySerializer (Serializer serializer) {
+			this.serializer = serializer;
+			setImmutable(true);
+		}
+
+		public void write (Kryo kryo, Output output, Object object) {
+			ConnectionDictionary dictionary = output instanceof DictionaryOutput ? ((DictionaryOutput)output).dictionary : null;
+			if (dictionary == null) {
+				serializer.write(kryo, output, object);
+				return;
+			}
+			Table objects = dictionary.objects;
+			int index = objects.indexOf(object);
+			if (index != -1) {
+				output.writeInt(index + 1, true);
+				return;
+			}
+			output.writeByte(0);
+			serializer.write(kryo, output, object);
+			objects.add(object, true);
+		}
+
+		public Object read (Kryo kryo, Input input, Class type) {
+			ConnectionDictionary dictionary = input instanceof DictionaryInput ? ((DictionaryInput)input).dictionary : null;
+			if (dictionary == null) return serializer.read(kryo, input, type);
+			int index = input.readInt(true);
+			if (index != 0) return dictionary.objects.get(index - 1);
+			Object object = serializer.read(kryo, input, type);
+			dictionary.objects.add(object, false);
+			return object;
+		}
+	}
+}
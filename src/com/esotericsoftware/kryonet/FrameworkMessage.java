@@ -30,6 +30,10 @@ public interface FrameworkMessage {
 	/** Internal message to give the client the server assigned connection ID. */
 	static public class RegisterTCP implements FrameworkMessage {
 		public int connectionID;
+		/** A random token the client can send with its datagrams to keep UDP working if its address changes. */
+		public int udpToken;
+		/** A random key the client uses to authenticate the token. */
+		public byte[] udpKey;
 	}
 
 	/** Internal message to give the server the client's UDP port. */
@@ -50,4 +54,61 @@ public interface FrameworkMessage {
 		public int id;
 		public boolean isReply;
 	}
+
+	/** Internal message containing an object sent with {@link Connection#sendReliableUDP(Object)}. */
+	static public class ReliableUDP implements FrameworkMessage {
+		public int sequence;
+		public byte[] data;
+	}
+
+	/** Internal message containing an object sent with {@link Connection#sendSequencedUDP(Object, int)}. */
+	static public class SequencedUDP implements FrameworkMessage {
+		public int channel;
+		public int sequence;
+		public Object object;
+	}
+
+	/** Internal message containing several serialized objects sent in one datagram. */
+	static public class BatchUDP implements FrameworkMessage {
+		public byte[][] frames;
+	}
+
+	/** Internal message containing part of a serialized object that is larger than the UDP MTU. */
+	static public class FragmentUDP implements FrameworkMessage {
+		public int id;
+		public int index, count;
+		public byte[] data;
+	}
+
+	/** Internal message to request the {@link FragmentUDP} messages of an object that were not received. */
+	static public class FragmentRequestUDP implements FrameworkMessage {
+		public int id;
+		public int[] missing;
+	}
+
+	/** Internal message carrying a datagram protected by forward error correction, or the parity for a group of datagrams. Data has
+	 * an index less than count. Parity has an index of count plus its subgroup and covers every datagram in the group whose index
+	 * modulo parity is the subgroup. For data, count and parity are not set. */
+	static public class FecUDP implements FrameworkMessage {
+		public int group;
+		public int index, count, parity;
+		/** For parity, the XOR of the data lengths of its subgroup. */
+		public int length;
+		public byte[] data;
+	}
+
+	/** Internal message sent over UDP, padded to size bytes, to determine the largest datagram that reaches the remote end. The
+	 * reply is sent over TCP. */
+	static public class MtuProbeUDP implements FrameworkMessage {
+		public int size;
+		public boolean isReply;
+		public byte[] padding;
+	}
+
+	/** Internal message to acknowledge {@link ReliableUDP} messages. Every sequence before the sequence has been received, and bit n
+	 * of received is set if sequence + 1 + n has been received. */
+	static public class AckUDP implements FrameworkMessage {
+		public int sequence;
+		public int received;
+	}
 }
@@ -21,26 +21,32 @@ package com.esotericsoftware.kryonet;
 
 import static com.esotericsoftware.minlog.Log.*;
 
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 
 import com.esotericsoftware.jsonbeans.Json;
 import com.esotericsoftware.jsonbeans.JsonException;
-import com.esotericsoftware.kryo.io.ByteBufferInputStream;
-import com.esotericsoftware.kryo.io.ByteBufferOutputStream;
+import com.esotericsoftware.kryonet.FrameworkMessage.AckUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.BatchUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.DiscoverHost;
+import com.esotericsoftware.kryonet.FrameworkMessage.FecUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentRequestUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.KeepAlive;
+import com.esotericsoftware.kryonet.FrameworkMessage.MtuProbeUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.Ping;
 import com.esotericsoftware.kryonet.FrameworkMessage.RegisterTCP;
 import com.esotericsoftware.kryonet.FrameworkMessage.RegisterUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.ReliableUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.SequencedUDP;
 
+/** Serializes objects as UTF-8 JSON. Characters are encoded directly into and decoded directly from the buffer, without any
+ * intermediate streams. The field metadata for each class is cached by {@link Json}. */
 public class JsonSerialization implements Serialization {
 	private final Json json = new Json();
-	private final ByteBufferInputStream byteBufferInputStream = new ByteBufferInputStream();
-	private final ByteBufferOutputStream byteBufferOutputStream = new ByteBufferOutputStream();
-	private final OutputStreamWriter writer = new OutputStreamWriter(byteBufferOutputStream);
+	private final Utf8Writer writer = new Utf8Writer();
 	private boolean logging = true, prettyPrint = true;
-	private byte[] logBuffer = {};
+	private char[] chars = new char[256];
 
 	public JsonSerialization () {
 		json.addClassTag("RegisterTCP", RegisterTCP.class);
@@ -48,42 +54,91 @@ public class JsonSerialization implements Serialization {
 		json.addClassTag("KeepAlive", KeepAlive.class);
 		json.addClassTag("DiscoverHost", DiscoverHost.class);
 		json.addClassTag("Ping", Ping.class);
+		json.addClassTag("ReliableUDP", ReliableUDP.class);
+		json.addClassTag("AckUDP", AckUDP.class);
+		json.addClassTag("SequencedUDP", SequencedUDP.class);
+		json.addClassTag("BatchUDP", BatchUDP.class);
+		json.addClassTag("FragmentUDP", FragmentUDP.class);
+		json.addClassTag("FragmentRequestUDP", FragmentRequestUDP.class);
+		json.addClassTag("FecUDP", FecUDP.class);
+		json.addClassTag("MtuProbeUDP", MtuProbeUDP.class);
 
 		json.setWriter(writer);
 	}
 
+	/** Returns the Json instance, which can be used to add class tags and serializers. */
+	public Json getJson () {
+		return json;
+	}
+
+	/** Controls whether the JSON for each object written is logged at the TRACE level. When TRACE logging is disabled, no work is
+	 * done for logging. */
 	public void setLogging (boolean logging, boolean prettyPrint) {
 		this.logging = logging;
 		this.prettyPrint = prettyPrint;
 	}
 
 	public synchronized void write (Connection connection, ByteBuffer buffer, Object object) {
-		byteBufferOutputStream.setByteBuffer(buffer);
+		writer.buffer = buffer;
 		int start = buffer.position();
 		try {
 			json.writeValue(object, Object.class, null);
 			writer.flush();
 		} catch (Exception ex) {
 			throw new JsonException("Error writing object: " + object, ex);
+		} finally {
+			writer.buffer = null;
 		}
-		if (INFO && logging) {
+		if (TRACE && logging) {
 			int end = buffer.position();
 			buffer.position(start);
-			buffer.limit(end);
-			int length = end - start;
-			if (logBuffer.length < length) logBuffer = new byte[length];
-			buffer.get(logBuffer, 0, length);
-			buffer.position(end);
-			buffer.limit(buffer.capacity());
-			String message = new String(logBuffer, 0, length);
+			int length = decode(buffer, end - start);
+			String message = new String(chars, 0, length);
 			if (prettyPrint) message = json.prettyPrint(message);
-			info("Wrote: " + message);
+			trace("kryonet", "Wrote: " + message);
 		}
 	}
 
 	public synchronized Object read (Connection connection, ByteBuffer buffer) {
-		byteBufferInputStream.setByteBuffer(buffer);
-		return json.fromJson(Object.class, byteBufferInputStream);
+		int length = decode(buffer, buffer.remaining());
+		return json.fromJson(Object.class, chars, 0, length);
+	}
+
+	/** Decodes the specified number of UTF-8 bytes from the buffer into {@link #chars}.
+	 * @return The number of chars. */
+	private int decode (ByteBuffer buffer, int byteCount) {
+		// A UTF-8 byte never decodes to more than one char.
+		char[] chars = this.chars;
+		if (chars.length < byteCount) this.chars = chars = new char[Math.max(byteCount, chars.length * 2)];
+		int charCount = 0;
+		if (buffer.hasArray()) {
+			// ASCII fast path.
+			byte[] bytes = buffer.array();
+			int offset = buffer.arrayOffset() + buffer.position();
+			while (charCount < byteCount) {
+				int b = bytes[offset + charCount];
+				if (b < 0) break;
+				chars[charCount++] = (char)b;
+			}
+			buffer.position(buffer.position() + charCount);
+			byteCount -= charCount;
+		}
+		int end = buffer.position() + byteCount;
+		while (buffer.position() < end) {
+			int b = buffer.get() & 0xff;
+			if (b < 0x80)
+				chars[charCount++] = (char)b;
+			else if (b < 0xe0)
+				chars[charCount++] = (char)((b & 0x1f) << 6 | buffer.get() & 0x3f);
+			else if (b < 0xf0)
+				chars[charCount++] = (char)((b & 0x0f) << 12 | (buffer.get() & 0x3f) << 6 | buffer.get() & 0x3f);
+			else {
+				int codePoint = (b & 0x07) << 18 | (buffer.get() & 0x3f) << 12 | (buffer.get() & 0x3f) << 6 | buffer.get() & 0x3f;
+				chars[charCount++] = Character.highSurrogate(codePoint);
+				chars[charCount++] = Character.lowSurrogate(codePoint);
+			}
+		}
+		return charCount;
 	}
 
 	public void writeLength (ByteBuffer buffer, int length) {
@@ -97,4 +152,74 @@ public class JsonSerialization implements Serialization {
 	public int getLengthLength () {
 		return 4;
 	}
+
+	/** Encodes chars as UTF-8 directly into a ByteBuffer. */
+	static private class Utf8Writer extends Writer {
+		ByteBuffer buffer;
+		private char highSurrogate;
+
+		public void write (int c) {
+			ByteBuffer buffer = this.buffer;
+			if (highSurrogate != 0 && !Character.isLowSurrogate((char)c)) {
+				// Unpaired surrogates are replaced, as the JDK encoder does.
+				highSurrogate = 0;
+				buffer.put((byte)'?');
+			}
+			if (c < 0x80)
+				buffer.put((byte)c);
+			else if (c < 0x800) {
+				buffer.put((byte)(0xc0 | c >> 6));
+				buffer.put((byte)(0x80 | c & 0x3f));
+			} else if (Character.isHighSurrogate((char)c))
+				highSurrogate = (char)c;
+			else if (Character.isLowSurrogate((char)c)) {
+				if (highSurrogate == 0) {
+					buffer.put((byte)'?');
+					return;
+				}
+				int codePoint = Character.toCodePoint(highSurrogate, (char)c);
+				highSurrogate = 0;
+				buffer.put((byte)(0xf0 | codePoint >> 18));
+				buffer.put((byte)(0x80 | codePoint >> 12 & 0x3f));
+				buffer.put((byte)(0x80 | codePoint >> 6 & 0x3f));
+				buffer.put((byte)(0x80 | codePoint & 0x3f));
+			} else {
+				buffer.put((byte)(0xe0 | c >> 12));
+				buffer.put((byte)(0x80 | c >> 6 & 0x3f));
+				buffer.put((byte)(0x80 | c & 0x3f));
+			}
+		}
+
+		public void write (char[] chars, int offset, int length) {
+			ByteBuffer buffer = this.buffer;
+			for (int i = offset, n = offset + length; i < n; i++) {
+				char c = chars[i];
+				if (c < 0x80 && highSurrogate == 0)
+					buffer.put((byte)c);
+				else
+					write(c);
+			}
+		}
+
+		public void write (String value, int offset, int length) {
+			ByteBuffer buffer = this.buffer;
+			for (int i = offset, n = offset + length; i < n; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80 && highSurrogate == 0)
+					buffer.put((byte)c);
+				else
+					write(c);
+			}
+		}
+
+		public void flush () {
+			if (highSurrogate != 0) {
+				highSurrogate = 0;
+				buffer.put((byte)'?');
+			}
+		}
+
+		public void close () {
+		}
+	}
 }
@@ -20,22 +20,31 @@
 package com.esotericsoftware.kryonet;
 
 import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.ByteBufferInput;
-import com.esotericsoftware.kryo.io.ByteBufferOutput;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryonet.ConnectionDictionary.DictionaryInput;
+import com.esotericsoftware.kryonet.ConnectionDictionary.DictionaryOutput;
+import com.esotericsoftware.kryonet.ConnectionDictionary.DictionarySerializer;
+import com.esotericsoftware.kryonet.FrameworkMessage.AckUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.BatchUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.DiscoverHost;
+import com.esotericsoftware.kryonet.FrameworkMessage.FecUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentRequestUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.KeepAlive;
+import com.esotericsoftware.kryonet.FrameworkMessage.MtuProbeUDP;
 import com.esotericsoftware.kryonet.FrameworkMessage.Ping;
 import com.esotericsoftware.kryonet.FrameworkMessage.RegisterTCP;
 import com.esotericsoftware.kryonet.FrameworkMessage.RegisterUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.ReliableUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.SequencedUDP;
 
 import java.nio.ByteBuffer;
 
 public class KryoSerialization implements Serialization {
 	private final Kryo kryo;
-	private final ByteBufferInput input;
-	private final ByteBufferOutput output;
+	private final DictionaryInput input;
+	private final DictionaryOutput output;
+	private int dictionarySize;
 
 	public KryoSerialization () {
 		this(new Kryo());
@@ -51,26 +60,97 @@ public class KryoSerialization implements Serialization {
 		kryo.register(KeepAlive.class);
 		kryo.register(DiscoverHost.class);
 		kryo.register(Ping.class);
+		kryo.register(byte[].class);
+		kryo.register(ReliableUDP.class);
+		kryo.register(AckUDP.class);
+		kryo.register(SequencedUDP.class);
+		kryo.register(byte[][].class);
+		kryo.register(BatchUDP.class);
+		kryo.register(int[].class);
+		kryo.register(FragmentUDP.class);
+		kryo.register(FragmentRequestUDP.class);
+		kryo.register(FecUDP.class);
+		kryo.register(MtuProbeUDP.class);
 
-		input = new ByteBufferInput();
-		output = new ByteBufferOutput();
+		input = new DictionaryInput();
+		output = new DictionaryOutput();
 	}
 
 	public Kryo getKryo () {
 		return kryo;
 	}
 
-	public synchronized void write (Connection connection, ByteBuffer buffer, Object object) {
+	/** Returns the KryoSerialization, or the KryoSerialization wrapped by a {@link CompressingSerialization}, or null. */
+	static KryoSerialization unwrap (Serialization serialization) {
+		if (serialization instanceof CompressingSerialization)
+			serialization = ((CompressingSerialization)serialization).getSerialization();
+		return serialization instanceof KryoSerialization ? (KryoSerialization)serialization : null;
+	}
+
+	/** Sets the number of strings and the number of {@link #addDictionaryType(Class) dictionary objects} remembered for each
+	 * direction of a TCP connection. When a remembered value is sent again, a short back-reference is written instead of the value.
+	 * This can greatly reduce the size of objects that repeat the same names, IDs or keys. The dictionary is reset when the
+	 * connection is opened. UDP never uses the dictionary, since datagrams may be lost or reordered.
+	 * <p>
+	 * Both ends of a connection must use the same size. Using a dictionary adds one byte to each string that is not remembered.
+	 * @param dictionarySize Set to zero to disable (the default). */
+	public void setDictionarySize (int dictionarySize) {
+		if (dictionarySize < 0) throw new IllegalArgumentException("dictionarySize cannot be < 0: " + dictionarySize);
+		this.dictionarySize = dictionarySize;
+	}
+
+	public int getDictionarySize () {
+		return dictionarySize;
+	}
+
+	/** Allows values of the specified registered type to be written as back-references when the {@link #setDictionarySize(int)
+	 * dictionary} is enabled. The type must be immutable and must implement equals and hashCode. Both ends of a connection must
+	 * add the same types. */
+	public void addDictionaryType (Class type) {
+		Registration registration = kryo.getRegistration(type);
+		if (registration.getSerializer() instanceof DictionarySerializer) return;
+		registration.setSerializer(new DictionarySerializer(registration.getSerializer()));
+	}
+
+	public void write (Connection connection, ByteBuffer buffer, Object object) {
+		write(connection, buffer, object, connection != null && connection.tcp.writeBuffer == buffer);
+	}
+
+	/** @param tcp True if the bytes are part of the connection's TCP stream, which allows the dictionary to be used. */
+	synchronized void write (Connection connection, ByteBuffer buffer, Object object, boolean tcp) {
 		output.setBuffer(buffer);
+		if (tcp && dictionarySize > 0) {
+			TcpConnection tcpConnection = connection.tcp;
+			if (tcpConnection.writeDictionary == null) tcpConnection.writeDictionary = new ConnectionDictionary(dictionarySize);
+			output.dictionary = tcpConnection.writeDictionary;
+		}
 		kryo.getContext().put("connection", connection);
-		kryo.writeClassAndObject(output, object);
-		output.flush();
+		try {
+			kryo.writeClassAndObject(output, object);
+			output.flush();
+		} finally {
+			output.dictionary = null;
+		}
+	}
+
+	public Object read (Connection connection, ByteBuffer buffer) {
+		return read(connection, buffer, connection != null && connection.tcp.readBuffer == buffer);
 	}
 
-	public synchronized Object read (Connection connection, ByteBuffer buffer) {
+	/** @param tcp True if the bytes are part of the connection's TCP stream, which allows the dictionary to be used. */
+	synchronized Object read (Connection connection, ByteBuffer buffer, boolean tcp) {
 		input.setBuffer(buffer);
+		if (tcp && dictionarySize > 0) {
+			TcpConnection tcpConnection = connection.tcp;
+			if (tcpConnection.readDictionary == null) tcpConnection.readDictionary = new ConnectionDictionary(dictionarySize);
+			input.dictionary = tcpConnection.readDictionary;
+		}
 		kryo.getContext().put("connection", connection);
-		return kryo.readClassAndObject(input);
+		try {
+			return kryo.readClassAndObject(input);
+		} finally {
+			input.dictionary = null;
+		}
 	}
 
 	public void writeLength (ByteBuffer buffer, int length) {
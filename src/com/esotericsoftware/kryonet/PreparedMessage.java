@@ -0,0 +1,123 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.nio.ByteBuffer;
+
+/** Holds an object and the bytes it serializes to, so the object only needs to be serialized once no matter how many times or to
+ * how many connections it is sent. A prepared message can be passed to {@link Connection#sendTCP(Object)},
+ * {@link Connection#sendUDP(Object)} and the Server sendTo methods in place of the object. The remote end receives the object as
+ * usual.
+ * <p>
+ * The object is serialized without a connection. If that fails, for example because the object graph contains RMI proxies, the
+ * object is serialized for each connection as usual. If the object is modified, {@link #invalidate()} must be called so the bytes
+ * are serialized again.
+ * @see PreparedMessageCache */
+public class PreparedMessage {
+	private Object object;
+	private Serialization serialization;
+	private byte[] bytes;
+	private boolean connectionRequired;
+
+	// Used by PreparedMessageCache.
+	PreparedMessage previous, next;
+
+	public PreparedMessage (Object object) {
+		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		this.object = object;
+	}
+
+	public synchronized Object getObject () {
+		return object;
+	}
+
+	/** Sets the object and discards the serialized bytes for the previous object. */
+	public synchronized void setObject (Object object) {
+		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		this.object = object;
+		bytes = null;
+		connectionRequired = false;
+	}
+
+	/** Discards the serialized bytes, causing the object to be serialized again the next time it is sent. This must be called after
+	 * the object is modified. */
+	public synchronized void invalidate () {
+		bytes = null;
+		connectionRequired = false;
+	}
+
+	/** Returns true if the object has been serialized with the specified serialization and the bytes are still valid. */
+	public synchronized boolean isPrepared (Serialization serialization) {
+		return bytes != null && this.serialization == serialization;
+	}
+
+	/** Writes the serialized bytes for the object to the buffer, serializing the object only if the bytes are not already known for
+	 * the specified serialization. If the object can't be serialized without a connection, it is serialized for the specified
+	 * connection each time it is written. */
+	void write (Connection connection, Serialization serialization, ByteBuffer buffer) {
+		Object object;
+		byte[] bytes;
+		synchronized (this) {
+			object = this.object;
+			if (connectionRequired) {
+				serialization.write(connection, buffer, object);
+				return;
+			}
+			bytes = this.serialization == serialization ? this.bytes : null;
+		}
+		if (bytes != null) {
+			buffer.put(bytes);
+			return;
+		}
+
+		int start = buffer.position();
+		try {
+			serialization.write(null, buffer, object);
+		} catch (RuntimeException ex) {
+			if (connection == null) throw ex;
+			if (DEBUG) debug("kryonet", "Unable to prepare message without a connection: " + object, ex);
+			synchronized (this) {
+				if (this.object == object) connectionRequired = true;
+			}
+			buffer.position(start);
+			serialization.write(connection, buffer, object);
+			return;
+		}
+		int end = buffer.position();
+		bytes = new byte[end - start];
+		buffer.position(start);
+		buffer.get(bytes);
+
+		synchronized (this) {
+			// Don't keep the bytes if the object was changed while it was being serialized.
+			if (this.object == object) {
+				this.bytes = bytes;
+				this.serialization = serialization;
+			}
+		}
+	}
+
+	public String toString () {
+		return "PreparedMessage: " + getObject();
+	}
+}
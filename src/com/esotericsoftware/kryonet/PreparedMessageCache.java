@@ -0,0 +1,103 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.util.IdentityHashMap;
+
+/** Keeps a {@link PreparedMessage} for the most recently sent objects, so sending the same object instance again does not
+ * serialize it again. Objects are compared by identity. An object's bytes are only kept once it has been sent a second time, so
+ * objects that are sent only once cost little more than a map lookup. When the cache is full, the least recently sent object is
+ * discarded.
+ * <p>
+ * Only objects which are not modified after being sent should be sent on a connection that uses a cache, otherwise the object
+ * must be {@link #remove(Object) removed} after it is modified. A cache can be shared by many connections.
+ * @see Connection#setPreparedMessageCache(PreparedMessageCache)
+ * @see Server#setPreparedMessageCache(PreparedMessageCache) */
+public class PreparedMessageCache {
+	private final IdentityHashMap<Object, PreparedMessage> objectToMessage;
+	private final int maxSize;
+	private PreparedMessage head, tail;
+
+	public PreparedMessageCache (int maxSize) {
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0: " + maxSize);
+		this.maxSize = maxSize;
+		objectToMessage = new IdentityHashMap(maxSize);
+	}
+
+	/** Returns the prepared message for the object, or null if the object has not been seen before. Either way the object becomes
+	 * the most recently used. */
+	public synchronized PreparedMessage get (Object object) {
+		PreparedMessage message = objectToMessage.get(object);
+		if (message != null) {
+			if (message != head) {
+				unlink(message);
+				addFirst(message);
+			}
+			return message;
+		}
+		message = new PreparedMessage(object);
+		objectToMessage.put(object, message);
+		addFirst(message);
+		if (objectToMessage.size() > maxSize) {
+			PreparedMessage eldest = tail;
+			unlink(eldest);
+			objectToMessage.remove(eldest.getObject());
+		}
+		return null;
+	}
+
+	/** Discards the serialized bytes for the object. This must be called after a cached object is modified. */
+	public synchronized void remove (Object object) {
+		PreparedMessage message = objectToMessage.remove(object);
+		if (message != null) unlink(message);
+	}
+
+	public synchronized void clear () {
+		objectToMessage.clear();
+		head = null;
+		tail = null;
+	}
+
+	public synchronized int size () {
+		return objectToMessage.size();
+	}
+
+	private void addFirst (PreparedMessage message) {
+		message.previous = null;
+		message.next = head;
+		if (head != null) head.previous = message;
+		head = message;
+		if (tail == null) tail = message;
+	}
+
+	private void unlink (PreparedMessage message) {
+		if (message.previous != null)
+			message.previous.next = message.next;
+		else
+			head = message.next;
+		if (message.next != null)
+			message.next.previous = message.previous;
+		else
+			tail = message.previous;
+		message.previous = null;
+		message.next = null;
+	}
+}
@@ -0,0 +1,188 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.AckUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.ReliableUDP;
+
+/** Reliable, ordered delivery of objects over UDP for one connection. Each object is given a sequence number and kept until the
+ * remote end acknowledges it. Unacknowledged objects are sent again when the retransmission timeout, computed from the measured
+ * round trip time, expires. The receiving end buffers objects that arrive early and acknowledges every object in its window, so
+ * only lost objects are sent again. Objects are delivered in the order they were sent, without waiting for other UDP or TCP
+ * traffic. */
+class ReliableUdp {
+	/** The maximum number of objects that can be unacknowledged, which must be at most 32 so the window fits in
+	 * {@link AckUDP#received}. */
+	static final int windowSize = 32;
+	/** The maximum number of objects waiting for room in the window. When exceeded the remote end is not keeping up, so the
+	 * connection is closed rather than buffering without bound, as when the TCP write buffer is full. */
+	static final int maxQueued = 1024;
+	static private final int initialTimeout = 200, minTimeout = 20, maxTimeout = 2000;
+
+	private final Connection connection;
+
+	// Sending.
+	private int nextSequence, oldestUnacked;
+	private final ReliableUDP[] sent = new ReliableUDP[windowSize];
+	private final long[] sendTimes = new long[windowSize], resendTimes = new long[windowSize];
+	private final boolean[] resent = new boolean[windowSize];
+	private final ArrayDeque<ReliableUDP> queue = new ArrayDeque();
+	private float smoothedRoundTrip = -1, roundTripVariance;
+	private int timeout = initialTimeout;
+
+	// Receiving.
+	private int expectedSequence;
+	private final byte[][] received = new byte[windowSize][];
+
+	public ReliableUdp (Connection connection) {
+		this.connection = connection;
+	}
+
+	/** Queues the serialized object and sends it if the window is not full.
+	 * @throws KryoNetException if {@link #maxQueued} objects are already waiting for room in the window. */
+	public synchronized void send (byte[] data) {
+		if (queue.size() >= maxQueued)
+			throw new KryoNetException("Reliable UDP queue limit exceeded: " + maxQueued + " objects are unsent.");
+		ReliableUDP message = new ReliableUDP();
+		message.sequence = nextSequence++;
+		message.data = data;
+		if (message.sequence - oldestUnacked < windowSize)
+			transmit(message, System.currentTimeMillis());
+		else
+			queue.add(message);
+	}
+
+	private void transmit (ReliableUDP message, long time) {
+		int index = message.sequence & windowSize - 1;
+		sent[index] = message;
+		sendTimes[index] = time;
+		resendTimes[index] = time + timeout;
+		resent[index] = false;
+		connection.sendUDP(message);
+	}
+
+	/** Sends any unacknowledged objects whose retransmission timeout has expired. */
+	public synchronized void update (long time) {
+		// Back off exponentially while nothing is acknowledged.
+		int backoff = Math.min(timeout * 2, maxTimeout);
+		boolean wasResent = false;
+		for (int sequence = oldestUnacked; sequence != nextSequence && sequence - oldestUnacked < windowSize; sequence++) {
+			int index = sequence & windowSize - 1;
+			ReliableUDP message = sent[index];
+			if (message == null || time < resendTimes[index]) continue;
+			resendTimes[index] = time + backoff;
+			resent[index] = true;
+			wasResent = true;
+			if (TRACE) trace("kryonet", connection + " resending reliable UDP: " + sequence);
+			connection.sendUDP(message);
+		}
+		if (wasResent) {
+			timeout = backoff;
+			UdpPacer pacer = connection.pacer;
+			if (pacer != null) pacer.lost(time);
+		}
+	}
+
+	public void acknowledged (AckUDP ack) {
+		long time = System.currentTimeMillis();
+		synchronized (this) {
+			for (int sequence = oldestUnacked; sequence != nextSequence && sequence - oldestUnacked < windowSize; sequence++) {
+				int index = sequence & windowSize - 1;
+				if (sent[index] == null) continue;
+				int offset = sequence - ack.sequence;
+				if (offset >= 0 && (offset == 0 || offset >= windowSize || (ack.received & 1 << offset - 1) == 0)) continue;
+				sent[index] = null;
+				// Only objects that were sent once give an unambiguous round trip time.
+				if (!resent[index]) updateTimeout((int)(time - sendTimes[index]));
+			}
+			while (oldestUnacked != nextSequence && sent[oldestUnacked & windowSize - 1] == null) {
+				oldestUnacked++;
+				ReliableUDP message = queue.poll();
+				if (message != null) transmit(message, time);
+			}
+		}
+	}
+
+	private void updateTimeout (int roundTrip) {
+		// See RFC 6298.
+		if (smoothedRoundTrip < 0) {
+			smoothedRoundTrip = roundTrip;
+			roundTripVariance = roundTrip / 2f;
+		} else {
+			roundTripVariance = 0.75f * roundTripVariance + 0.25f * Math.abs(smoothedRoundTrip - roundTrip);
+			smoothedRoundTrip = 0.875f * smoothedRoundTrip + 0.125f * roundTrip;
+		}
+		timeout = Math.min(maxTimeout, Math.max(minTimeout, (int)(smoothedRoundTrip + 4 * roundTripVariance)));
+	}
+
+	/** Returns the smoothed round trip time measured from acknowledgements, or -1 if there has been none. */
+	public synchronized int getRoundTripTime () {
+		return (int)smoothedRoundTrip;
+	}
+
+	/** Stores the object and acknowledges it.
+	 * @return The serialized objects that can now be delivered in order, or null. */
+	public ArrayList<byte[]> received (ReliableUDP message) {
+		ArrayList<byte[]> deliver = null;
+		AckUDP ack = new AckUDP();
+		synchronized (this) {
+			int offset = message.sequence - expectedSequence;
+			if (offset >= 0 && offset < windowSize) {
+				int index = message.sequence & windowSize - 1;
+				if (received[index] == null) received[index] = message.data;
+				while (true) {
+					index = expectedSequence & windowSize - 1;
+					byte[] data = received[index];
+					if (data == null) break;
+					received[index] = null;
+					expectedSequence++;
+					if (deliver == null) deliver = new ArrayList(1);
+					deliver.add(data);
+				}
+			} else if (TRACE) //
+				trace("kryonet", connection + " ignoring reliable UDP: " + message.sequence + " (expected: " + expectedSequence + ")");
+			ack.sequence = expectedSequence;
+			for (int i = 0; i < windowSize - 1; i++)
+				if (received[expectedSequence + 1 + i & windowSize - 1] != null) ack.received |= 1 << i;
+		}
+		// Duplicates are acknowledged too, since the previous acknowledgement may have been lost.
+		connection.sendUDP(ack);
+		return deliver;
+	}
+
+	public synchronized void reset () {
+		nextSequence = 0;
+		oldestUnacked = 0;
+		expectedSequence = 0;
+		for (int i = 0; i < windowSize; i++) {
+			sent[i] = null;
+			received[i] = null;
+		}
+		queue.clear();
+		smoothedRoundTrip = -1;
+		roundTripVariance = 0;
+		timeout = initialTimeout;
+	}
+}
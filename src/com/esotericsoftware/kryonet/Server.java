@@ -23,14 +23,20 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.util.IntMap;
@@ -49,8 +55,20 @@ public class Server implements EndPoint {
 	private int emptySelects;
 	private ServerSocketChannel serverChannel;
 	private UdpConnection udp;
-	private Connection[] connections = {};
+	private UdpReader[] udpReaders = {};
+	private int udpSocketCount = 1;
+	/** The datagrams received by the {@link UdpReader} threads, waiting to be dispatched by the update thread. */
+	private final ArrayBlockingQueue<QueuedDatagram> udpQueue = new ArrayBlockingQueue(maxQueuedDatagrams);
+	/** The datagrams dispatched by the update thread, which the {@link UdpReader} threads receive into again. */
+	private final ArrayBlockingQueue<QueuedDatagram> udpFree = new ArrayBlockingQueue(maxQueuedDatagrams);
+	private final AtomicInteger udpAllocated = new AtomicInteger();
+	static private final int maxQueuedDatagrams = 1024;
+	private volatile Connection[] connections = {};
+	private final Object connectionsLock = new Object();
 	private IntMap<Connection> pendingConnections = new IntMap();
+	private final ConcurrentHashMap<InetSocketAddress, Connection> udpAddresses = new ConcurrentHashMap();
+	private final IntMap<Connection> udpTokens = new IntMap();
+	private final SecureRandom random = new SecureRandom();
 	Listener[] listeners = {};
 	private Object listenerLock = new Object();
 	private int nextConnectionID = 1;
@@ -58,6 +76,11 @@ public class Server implements EndPoint {
 	private Object updateLock = new Object();
 	private Thread updateThread;
 	private ServerDiscoveryHandler discoveryHandler;
+	private PreparedMessageCache preparedMessageCache;
+	private boolean prepareBroadcasts;
+	private boolean coalesceUDP, fragmentUDP, probeUdpMtu;
+	private int paceUDP, fecGroupSize, fecParityCount;
+	private int udpDelay = -1;
 
 	private Listener dispatchListener = new Listener() {
 		public void connected (Connection connection) {
@@ -128,12 +151,85 @@ public class Server implements EndPoint {
 		discoveryHandler = newDiscoveryHandler;
 	}
 
+	/** Sets the number of UDP sockets opened by the next {@link #bind(InetSocketAddress, InetSocketAddress) bind}. When more than
+	 * one, every socket is bound to the same port with SO_REUSEPORT and the operating system spreads clients across the sockets by
+	 * their address. The first socket is read by the update thread. Each other socket is read by its own thread, which only
+	 * receives the datagrams and hands them to the update thread, so the system calls to receive are spread across threads while
+	 * deserialization and {@link Listener listeners} still run on the update thread. UDP throughput therefore does not scale with
+	 * the number of sockets or cores beyond what one update thread can deserialize and dispatch. If 1024 datagrams are waiting
+	 * for the update thread, the other threads stop receiving until it catches up. Each connection sends UDP from the socket its
+	 * datagrams arrive on. If SO_REUSEPORT is not supported (it requires Java 9+ and an operating system such as Linux), a single
+	 * socket is used. Default is 1. */
+	public void setUdpSocketCount (int udpSocketCount) {
+		if (udpSocketCount < 1) throw new IllegalArgumentException("udpSocketCount must be > 0: " + udpSocketCount);
+		this.udpSocketCount = udpSocketCount;
+	}
+
+	/** Sets whether UDP objects are coalesced for connections accepted after this call.
+	 * @see Connection#setCoalesceUDP(boolean) */
+	public void setCoalesceUDP (boolean coalesceUDP) {
+		if (coalesceUDP) checkUdpFraming("UDP coalescing");
+		this.coalesceUDP = coalesceUDP;
+	}
+
+	/** Sets whether large UDP objects are fragmented for connections accepted after this call.
+	 * @see Connection#setFragmentUDP(boolean) */
+	public void setFragmentUDP (boolean fragmentUDP) {
+		if (fragmentUDP) checkUdpFraming("UDP fragmentation");
+		this.fragmentUDP = fragmentUDP;
+	}
+
+	/** Sets the maximum UDP send rate for connections accepted after this call. While paced datagrams are waiting,
+	 * {@link #update(int)} waits no longer than needed to send them.
+	 * @see Connection#setPaceUDP(int) */
+	public void setPaceUDP (int maxBytesPerSecond) {
+		UdpPacer.validate(maxBytesPerSecond);
+		this.paceUDP = maxBytesPerSecond;
+	}
+
+	/** Sets the forward error correction for UDP for connections accepted after this call.
+	 * @see Connection#setFecUDP(int, int) */
+	public void setFecUDP (int groupSize, int parityCount) {
+		UdpFec.validate(groupSize, parityCount);
+		if (groupSize > 0) checkUdpFraming("UDP forward error correction");
+		this.fecGroupSize = groupSize;
+		this.fecParityCount = parityCount;
+	}
+
+	private void checkUdpFraming (String feature) {
+		if (KryoSerialization.unwrap(serialization) == null)
+			throw new IllegalStateException(feature + " requires KryoSerialization.");
+	}
+
+	/** Sets whether the UDP MTU is probed for connections accepted after this call.
+	 * @see Connection#setProbeUdpMtu(boolean) */
+	public void setProbeUdpMtu (boolean probeUdpMtu) {
+		this.probeUdpMtu = probeUdpMtu;
+	}
+
+	/** Sets the prepared message cache for connections accepted after this call.
+	 * @see Connection#setPreparedMessageCache(PreparedMessageCache) */
+	public void setPreparedMessageCache (PreparedMessageCache preparedMessageCache) {
+		this.preparedMessageCache = preparedMessageCache;
+	}
+
+	/** Sets whether the sendToAll methods serialize an object once for all connections, as if it were wrapped in a
+	 * {@link PreparedMessage}. Default is false.
+	 * <p>
+	 * The object is serialized without a connection in the Kryo context. Objects that fail to serialize without a connection are
+	 * serialized for each connection as usual, but serializers that silently behave differently when there is no connection
+	 * must not be used with this setting. */
+	public void setPrepareBroadcasts (boolean prepareBroadcasts) {
+		this.prepareBroadcasts = prepareBroadcasts;
+	}
+
 	public Serialization getSerialization () {
 		return serialization;
 	}
 
 	public Kryo getKryo () {
-		return serialization instanceof KryoSerialization ? ((KryoSerialization)serialization).getKryo() : null;
+		KryoSerialization kryoSerialization = KryoSerialization.unwrap(serialization);
+		return kryoSerialization != null ? kryoSerialization.getKryo() : null;
 	}
 
 	/** Opens a TCP only server.
@@ -162,8 +258,25 @@ public class Server implements EndPoint {
 
 				if (udpPort != null) {
 					udp = new UdpConnection(serialization, objectBufferSize);
-					udp.bind(selector, udpPort);
-					if (DEBUG) debug("kryonet", "Accepting connections on port: " + udpPort + "/UDP");
+					int udpSocketCount = this.udpSocketCount;
+					if (!udp.bind(selector, udpPort, udpSocketCount > 1) && udpSocketCount > 1) {
+						if (WARN) warn("kryonet", "SO_REUSEPORT is not supported, using a single UDP socket.");
+						udpSocketCount = 1;
+					}
+					UdpReader[] udpReaders = new UdpReader[udpSocketCount - 1];
+					for (int i = 0; i < udpReaders.length; i++) {
+						UdpConnection readerUdp = new UdpConnection(serialization, objectBufferSize);
+						Selector readerSelector = Selector.open();
+						udpReaders[i] = new UdpReader(readerUdp, readerSelector);
+						this.udpReaders = udpReaders;
+						readerUdp.bind(readerSelector, udpPort, true);
+					}
+					for (int i = 0; i < udpReaders.length; i++) {
+						Thread thread = new Thread(udpReaders[i], "Server UDP " + (i + 1));
+						thread.setDaemon(true);
+						thread.start();
+					}
+					if (DEBUG) debug("kryonet", "Accepting connections on port: " + udpPort + "/UDP (" + udpSocketCount + " sockets)");
 				}
 			} catch (IOException ex) {
 				close();
@@ -181,6 +294,8 @@ public class Server implements EndPoint {
 		synchronized (updateLock) { // Blocks to avoid a select while the selector is used to bind the server connection.
 		}
 		long startTime = System.currentTimeMillis();
+		// Wake up in time to send paced datagrams.
+		if (udpDelay >= 0 && timeout > 0) timeout = Math.max(1, Math.min(timeout, udpDelay));
 		int select = 0;
 		if (timeout > 0) {
 			select = selector.select(timeout);
@@ -188,14 +303,19 @@ public class Server implements EndPoint {
 			select = selector.selectNow();
 		}
 		if (select == 0) {
-			emptySelects++;
-			if (emptySelects == 100) {
+			// A UdpReader wakes the selector when it has queued datagrams.
+			if (readQueuedUdp())
 				emptySelects = 0;
-				// NIO freaks and returns immediately with 0 sometimes, so try to keep from hogging the CPU.
-				long elapsedTime = System.currentTimeMillis() - startTime;
-				try {
-					if (elapsedTime < 25) Thread.sleep(25 - elapsedTime);
-				} catch (InterruptedException ex) {
+			else {
+				emptySelects++;
+				if (emptySelects == 100) {
+					emptySelects = 0;
+					// NIO freaks and returns immediately with 0 sometimes, so try to keep from hogging the CPU.
+					long elapsedTime = System.currentTimeMillis() - startTime;
+					try {
+						if (elapsedTime < 25) Thread.sleep(25 - elapsedTime);
+					} catch (InterruptedException ex) {
+					}
 				}
 			}
 		} else {
@@ -203,7 +323,6 @@ public class Server implements EndPoint {
 			Set<SelectionKey> keys = selector.selectedKeys();
 			synchronized (keys) {
 				UdpConnection udp = this.udp;
-				outer:
 				for (Iterator<SelectionKey> iter = keys.iterator(); iter.hasNext();) {
 					keepAlive();
 					SelectionKey selectionKey = iter.next();
@@ -276,80 +395,7 @@ public class Server implements EndPoint {
 							selectionKey.channel().close();
 							continue;
 						}
-						InetSocketAddress fromAddress;
-						try {
-							fromAddress = udp.readFromAddress();
-						} catch (IOException ex) {
-							if (WARN) warn("kryonet", "Error reading UDP data.", ex);
-							continue;
-						}
-						if (fromAddress == null) continue;
-
-						Connection[] connections = this.connections;
-						for (int i = 0, n = connections.length; i < n; i++) {
-							Connection connection = connections[i];
-							if (fromAddress.equals(connection.udpRemoteAddress)) {
-								fromConnection = connection;
-								break;
-							}
-						}
-
-						Object object;
-						try {
-							object = udp.readObject(fromConnection);
-						} catch (KryoNetException ex) {
-							if (WARN) {
-								if (fromConnection != null) {
-									if (ERROR) error("kryonet", "Error reading UDP from connection: " + fromConnection, ex);
-								} else
-									warn("kryonet", "Error reading UDP from unregistered address: " + fromAddress, ex);
-							}
-							continue;
-						}
-
-						if (object instanceof FrameworkMessage) {
-							if (object instanceof RegisterUDP) {
-								// Store the fromAddress on the connection and reply over TCP with a RegisterUDP to indicate success.
-								int fromConnectionID = ((RegisterUDP)object).connectionID;
-								Connection connection = pendingConnections.remove(fromConnectionID);
-								if (connection != null) {
-									if (connection.udpRemoteAddress != null) continue outer;
-									connection.udpRemoteAddress = fromAddress;
-									addConnection(connection);
-									connection.sendTCP(new RegisterUDP());
-									if (DEBUG) debug("kryonet",
-										"Port " + udp.datagramChannel.socket().getLocalPort() + "/UDP connected to: " + fromAddress);
-									connection.notifyConnected();
-									continue;
-								}
-								if (DEBUG)
-									debug("kryonet", "Ignoring incoming RegisterUDP with invalid connection ID: " + fromConnectionID);
-								continue;
-							}
-							if (object instanceof DiscoverHost) {
-								try {
-									boolean responseSent = discoveryHandler.onDiscoverHost(udp.datagramChannel, fromAddress,
-										serialization);
-									if (DEBUG && responseSent) debug("kryonet", "Responded to host discovery from: " + fromAddress);
-								} catch (IOException ex) {
-									if (WARN) warn("kryonet", "Error replying to host discovery from: " + fromAddress, ex);
-								}
-								continue;
-							}
-						}
-
-						if (fromConnection != null) {
-							if (DEBUG) {
-								String objectString = object == null ? "null" : object.getClass().getSimpleName();
-								if (object instanceof FrameworkMessage) {
-									if (TRACE) trace("kryonet", fromConnection + " received UDP: " + objectString);
-								} else
-									debug("kryonet", fromConnection + " received UDP: " + objectString);
-							}
-							fromConnection.notifyReceived(object);
-							continue;
-						}
-						if (DEBUG) debug("kryonet", "Ignoring UDP from unregistered address: " + fromAddress);
+						readUdp(udp);
 					} catch (CancelledKeyException ex) {
 						if (fromConnection != null)
 							fromConnection.close();
@@ -358,8 +404,10 @@ public class Server implements EndPoint {
 					}
 				}
 			}
+			readQueuedUdp();
 		}
 		long time = System.currentTimeMillis();
+		int udpDelay = -1;
 		Connection[] connections = this.connections;
 		for (int i = 0, n = connections.length; i < n; i++) {
 			Connection connection = connections[i];
@@ -368,9 +416,180 @@ public class Server implements EndPoint {
 				connection.close();
 			} else {
 				if (connection.tcp.needsKeepAlive(time)) connection.sendTCP(FrameworkMessage.keepAlive);
+				if (connection.udpRemoteAddress != null) {
+					int delay = connection.updateUdp(time);
+					if (delay != -1 && (udpDelay == -1 || delay < udpDelay)) udpDelay = delay;
+				}
 			}
 			if (connection.isIdle()) connection.notifyIdle();
 		}
+		this.udpDelay = udpDelay;
+	}
+
+	/** Reads and dispatches the datagrams waiting on the update thread's UDP socket. */
+	private void readUdp (UdpConnection udp) {
+		// Read every datagram that is waiting, up to a limit so TCP connections are not starved.
+		for (int datagrams = 0; datagrams < UdpConnection.maxDatagramsPerRead; datagrams++) {
+			InetSocketAddress fromAddress;
+			try {
+				fromAddress = udp.readFromAddress();
+			} catch (IOException ex) {
+				if (WARN) warn("kryonet", "Error reading UDP data.", ex);
+				break;
+			}
+			if (fromAddress == null) break;
+			dispatchUdp(udp, fromAddress, udp);
+		}
+	}
+
+	/** Dispatches the datagrams received by the {@link UdpReader} threads, so listeners are only called on the update thread.
+	 * @return True if any datagrams were dispatched. */
+	private boolean readQueuedUdp () {
+		UdpConnection udp = this.udp;
+		if (udp == null) return false;
+		boolean dispatched = false;
+		for (int datagrams = 0; datagrams < maxQueuedDatagrams; datagrams++) {
+			QueuedDatagram datagram = udpQueue.poll();
+			if (datagram == null) break;
+			ByteBuffer buffer = datagram.buffer;
+			buffer.flip();
+			udp.readBuffer.clear();
+			udp.readBuffer.put(buffer);
+			InetSocketAddress fromAddress = datagram.fromAddress;
+			UdpConnection socket = datagram.socket;
+			datagram.fromAddress = null;
+			udpFree.offer(datagram);
+			dispatchUdp(udp, fromAddress, socket);
+			dispatched = true;
+		}
+		return dispatched;
+	}
+
+	/** Deserializes the datagram in the read buffer and dispatches it. Must be called on the update thread.
+	 * @param udp Holds the datagram in its read buffer.
+	 * @param socket The socket the datagram arrived on, which replies are sent from. */
+	private void dispatchUdp (UdpConnection udp, InetSocketAddress fromAddress, UdpConnection socket) {
+		Connection fromConnection = udpAddresses.get(fromAddress);
+		int offset = 0;
+		Connection tokenConnection = tokenConnection(udp.readBuffer, fromConnection);
+		if (tokenConnection != null) {
+			offset = UdpToken.length;
+			// Sequences are compared so they can wrap around.
+			UdpToken check = tokenConnection.udpTokenCheck;
+			int sequence = UdpToken.getSequence(udp.readBuffer);
+			boolean newest = sequence - check.sequence > 0;
+			if (newest) check.sequence = sequence;
+			if (fromConnection == null) {
+				// The client's address changed. A datagram older than one already accepted may have been delayed in the network, so
+				// only a newer one moves the connection.
+				if (!newest) {
+					if (DEBUG) debug("kryonet", "Ignoring old UDP for " + tokenConnection + " from: " + fromAddress);
+					udp.readBuffer.clear();
+					return;
+				}
+				if (!migrateUdp(tokenConnection, fromAddress, socket)) {
+					udp.readBuffer.clear();
+					return;
+				}
+				fromConnection = tokenConnection;
+			}
+		}
+		Object object;
+		try {
+			object = udp.readObject(fromConnection, offset);
+		} catch (KryoNetException ex) {
+			if (WARN) {
+				if (fromConnection != null) {
+					if (ERROR) error("kryonet", "Error reading UDP from connection: " + fromConnection, ex);
+				} else
+					warn("kryonet", "Error reading UDP from unregistered address: " + fromAddress, ex);
+			}
+			return;
+		}
+
+		if (object instanceof FrameworkMessage) {
+			if (object instanceof RegisterUDP) {
+				// Store the fromAddress on the connection and reply over TCP with a RegisterUDP to indicate success.
+				int fromConnectionID = ((RegisterUDP)object).connectionID;
+				Connection connection;
+				synchronized (connectionsLock) {
+					connection = pendingConnections.remove(fromConnectionID);
+					if (connection != null) {
+						if (connection.udpRemoteAddress != null) return;
+						connection.udpRemoteAddress = fromAddress;
+						// Send from the socket the client's datagrams arrive on.
+						connection.udp = socket;
+						addConnection(connection);
+					}
+				}
+				if (connection != null) {
+					connection.sendTCP(new RegisterUDP());
+					if (connection.probeUdpMtu) connection.startUdpMtuProbe();
+					if (DEBUG)
+					debug("kryonet", "Port " + socket.datagramChannel.socket().getLocalPort() + "/UDP connected to: " + fromAddress);
+					connection.notifyConnected();
+					return;
+				}
+				if (DEBUG) debug("kryonet", "Ignoring incoming RegisterUDP with invalid connection ID: " + fromConnectionID);
+				return;
+			}
+			if (object instanceof DiscoverHost) {
+				try {
+					boolean responseSent = discoveryHandler.onDiscoverHost(socket.datagramChannel, fromAddress, serialization);
+					if (DEBUG && responseSent) debug("kryonet", "Responded to host discovery from: " + fromAddress);
+				} catch (IOException ex) {
+					if (WARN) warn("kryonet", "Error replying to host discovery from: " + fromAddress, ex);
+				}
+				return;
+			}
+		}
+
+		if (fromConnection != null) {
+			if (DEBUG) {
+				String objectString = object == null ? "null" : object.getClass().getSimpleName();
+				if (object instanceof FrameworkMessage) {
+					if (TRACE) trace("kryonet", fromConnection + " received UDP: " + objectString);
+				} else
+					debug("kryonet", fromConnection + " received UDP: " + objectString);
+			}
+			fromConnection.notifyReceived(object);
+			return;
+		}
+		if (DEBUG) debug("kryonet", "Ignoring UDP from unregistered address: " + fromAddress);
+	}
+
+	/** Returns the connection whose {@link UdpToken} header the datagram starts with, or null if it has no valid header. Only the
+	 * connection for the address is checked if the address is known.
+	 * @param buffer Contains the datagram from 0 to its position. */
+	private Connection tokenConnection (ByteBuffer buffer, Connection fromConnection) {
+		int token = UdpToken.getToken(buffer);
+		if (token == 0) return null;
+		Connection connection = fromConnection;
+		if (connection == null) {
+			synchronized (connectionsLock) {
+				connection = udpTokens.get(token);
+			}
+		}
+		if (connection == null) return null;
+		UdpToken check = connection.udpTokenCheck;
+		return check != null && check.check(buffer) ? connection : null;
+	}
+
+	/** Changes the UDP address of the connection after a datagram with a valid token header arrived from a new address.
+	 * @return False if the connection is no longer registered. */
+	private boolean migrateUdp (Connection connection, InetSocketAddress address, UdpConnection udp) {
+		InetSocketAddress oldAddress;
+		synchronized (connectionsLock) {
+			oldAddress = connection.udpRemoteAddress;
+			if (oldAddress == null || udpTokens.get(connection.udpToken) != connection) return false;
+			udpAddresses.remove(oldAddress, connection);
+			udpAddresses.put(address, connection);
+			connection.udpRemoteAddress = address;
+			connection.udp = udp;
+		}
+		if (DEBUG) debug("kryonet", connection + " UDP address changed from " + oldAddress + " to: " + address);
+		if (connection.probeUdpMtu) connection.startUdpMtuProbe();
+		return true;
 	}
 
 	private void keepAlive () {
@@ -411,6 +630,12 @@ public class Server implements EndPoint {
 		Connection connection = newConnection();
 		connection.initialize(serialization, writeBufferSize, objectBufferSize);
 		connection.endPoint = this;
+		connection.preparedMessageCache = preparedMessageCache;
+		connection.setCoalesceUDP(coalesceUDP);
+		connection.fragmentUDP = fragmentUDP;
+		connection.probeUdpMtu = probeUdpMtu;
+		if (paceUDP > 0) connection.setPaceUDP(paceUDP);
+		if (fecGroupSize > 0) connection.setFecUDP(fecGroupSize, fecParityCount);
 		UdpConnection udp = this.udp;
 		if (udp != null) connection.udp = udp;
 		try {
@@ -426,10 +651,22 @@ public class Server implements EndPoint {
 			if (udp == null)
 				addConnection(connection);
 			else
-				pendingConnections.put(id, connection);
+				synchronized (connectionsLock) {
+					pendingConnections.put(id, connection);
+					int token;
+					do {
+						token = random.nextInt();
+					} while (token == 0 || udpTokens.containsKey(token));
+					connection.udpToken = token;
+					connection.udpKey = new byte[UdpToken.keyLength];
+					random.nextBytes(connection.udpKey);
+					connection.udpTokenCheck = new UdpToken(token, connection.udpKey);
+				}
 
 			RegisterTCP registerConnection = new RegisterTCP();
 			registerConnection.connectionID = id;
+			registerConnection.udpToken = connection.udpToken;
+			registerConnection.udpKey = connection.udpKey;
 			connection.sendTCP(registerConnection);
 
 			if (udp == null) connection.notifyConnected();
@@ -446,24 +683,41 @@ public class Server implements EndPoint {
 	}
 
 	private void addConnection (Connection connection) {
-		Connection[] newConnections = new Connection[connections.length + 1];
-		newConnections[0] = connection;
-		System.arraycopy(connections, 0, newConnections, 1, connections.length);
-		connections = newConnections;
+		synchronized (connectionsLock) {
+			Connection[] newConnections = new Connection[connections.length + 1];
+			newConnections[0] = connection;
+			System.arraycopy(connections, 0, newConnections, 1, connections.length);
+			connections = newConnections;
+			if (connection.udpRemoteAddress != null) {
+				udpAddresses.put(connection.udpRemoteAddress, connection);
+				udpTokens.put(connection.udpToken, connection);
+			}
+		}
 	}
 
 	void removeConnection (Connection connection) {
-		ArrayList<Connection> temp = new ArrayList(Arrays.asList(connections));
-		temp.remove(connection);
-		connections = temp.toArray(new Connection[temp.size()]);
-
-		pendingConnections.remove(connection.id);
+		synchronized (connectionsLock) {
+			ArrayList<Connection> temp = new ArrayList(Arrays.asList(connections));
+			temp.remove(connection);
+			connections = temp.toArray(new Connection[temp.size()]);
+
+			pendingConnections.remove(connection.id);
+			InetSocketAddress udpRemoteAddress = connection.udpRemoteAddress;
+			if (udpRemoteAddress != null) udpAddresses.remove(udpRemoteAddress, connection);
+			if (udpTokens.get(connection.udpToken) == connection) udpTokens.remove(connection.udpToken);
+		}
 	}
 
-	// BOZO - Provide mechanism for sending to multiple clients without serializing multiple times.
+	/** Wraps the object so it is only serialized once when it is sent to multiple connections, if
+	 * {@link #setPrepareBroadcasts(boolean) enabled}. */
+	private Object prepare (Object object, Connection[] connections) {
+		if (!prepareBroadcasts || connections.length < 2 || object instanceof PreparedMessage) return object;
+		return new PreparedMessage(object);
+	}
 
 	public void sendToAllTCP (Object object) {
 		Connection[] connections = this.connections;
+		object = prepare(object, connections);
 		for (int i = 0, n = connections.length; i < n; i++) {
 			Connection connection = connections[i];
 			connection.sendTCP(object);
@@ -472,6 +726,7 @@ public class Server implements EndPoint {
 
 	public void sendToAllExceptTCP (int connectionID, Object object) {
 		Connection[] connections = this.connections;
+		object = prepare(object, connections);
 		for (int i = 0, n = connections.length; i < n; i++) {
 			Connection connection = connections[i];
 			if (connection.id != connectionID) connection.sendTCP(object);
@@ -491,6 +746,7 @@ public class Server implements EndPoint {
 
 	public void sendToAllUDP (Object object) {
 		Connection[] connections = this.connections;
+		object = prepare(object, connections);
 		for (int i = 0, n = connections.length; i < n; i++) {
 			Connection connection = connections[i];
 			connection.sendUDP(object);
@@ -499,12 +755,21 @@ public class Server implements EndPoint {
 
 	public void sendToAllExceptUDP (int connectionID, Object object) {
 		Connection[] connections = this.connections;
+		object = prepare(object, connections);
 		for (int i = 0, n = connections.length; i < n; i++) {
 			Connection connection = connections[i];
 			if (connection.id != connectionID) connection.sendUDP(object);
 		}
 	}
 
+	/** Immediately sends any objects collected by each connection's coalescer.
+	 * @see Connection#flushUDP() */
+	public void flushUDP () {
+		Connection[] connections = this.connections;
+		for (int i = 0, n = connections.length; i < n; i++)
+			connections[i].flushUDP();
+	}
+
 	public void sendToUDP (int connectionID, Object object) {
 		Connection[] connections = this.connections;
 		for (int i = 0, n = connections.length; i < n; i++) {
@@ -572,6 +837,13 @@ public class Server implements EndPoint {
 			udp.close();
 			this.udp = null;
 		}
+		UdpReader[] udpReaders = this.udpReaders;
+		for (int i = 0, n = udpReaders.length; i < n; i++)
+			udpReaders[i].close();
+		this.udpReaders = new UdpReader[0];
+		udpQueue.clear();
+		udpFree.clear();
+		udpAllocated.set(0);
 
 		synchronized (updateLock) { // Blocks to avoid a select while the selector is used to bind the server connection.
 		}
@@ -583,6 +855,100 @@ public class Server implements EndPoint {
 		}
 	}
 
+	/** Receives datagrams for one of the additional UDP sockets on its own thread and queues them for the update thread. Datagrams
+	 * are received into pooled buffers which the update thread returns after copying, so nothing is allocated per datagram. When
+	 * every buffer is waiting for the update thread, the reader stops receiving and datagrams wait in the socket's receive buffer,
+	 * the same as when the update thread falls behind reading its own socket. */
+	private class UdpReader implements Runnable {
+		final UdpConnection udp;
+		private final Selector selector;
+
+		UdpReader (UdpConnection udp, Selector selector) {
+			this.udp = udp;
+			this.selector = selector;
+		}
+
+		public void run () {
+			if (TRACE) trace("kryonet", "Server UDP thread started.");
+			try {
+				while (udp.datagramChannel != null) {
+					if (selector.select(250) == 0) continue;
+					selector.selectedKeys().clear();
+					receive();
+				}
+			} catch (IOException ex) {
+				if (ERROR) error("kryonet", "Error reading UDP.", ex);
+			} catch (ClosedSelectorException ignored) {
+			}
+			close();
+			if (TRACE) trace("kryonet", "Server UDP thread stopped.");
+		}
+
+		private void receive () {
+			boolean received = false;
+			for (int datagrams = 0; datagrams < UdpConnection.maxDatagramsPerRead; datagrams++) {
+				QueuedDatagram datagram = obtain(received);
+				if (datagram == null) break;
+				InetSocketAddress fromAddress;
+				datagram.buffer.clear();
+				try {
+					fromAddress = udp.readFromAddress(datagram.buffer);
+				} catch (IOException ex) {
+					if (WARN) warn("kryonet", "Error reading UDP data.", ex);
+					udpFree.offer(datagram);
+					break;
+				}
+				if (fromAddress == null) {
+					udpFree.offer(datagram);
+					break;
+				}
+				datagram.socket = udp;
+				datagram.fromAddress = fromAddress;
+				// There are never more datagrams than the queue holds.
+				udpQueue.offer(datagram);
+				received = true;
+			}
+			if (received) Server.this.selector.wakeup();
+		}
+
+		/** Returns a free datagram, waiting for the update thread to return one if all have been allocated.
+		 * @return May be null if the reader was closed. */
+		private QueuedDatagram obtain (boolean received) {
+			QueuedDatagram datagram = udpFree.poll();
+			if (datagram != null) return datagram;
+			if (udpAllocated.incrementAndGet() <= maxQueuedDatagrams) return new QueuedDatagram(udp.readBuffer.capacity());
+			udpAllocated.decrementAndGet();
+			if (received) Server.this.selector.wakeup();
+			try {
+				while (udp.datagramChannel != null) {
+					datagram = udpFree.poll(250, TimeUnit.MILLISECONDS);
+					if (datagram != null) return datagram;
+				}
+			} catch (InterruptedException ignored) {
+			}
+			return null;
+		}
+
+		void close () {
+			udp.close();
+			try {
+				selector.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/** A datagram received by a {@link UdpReader}. */
+	static private class QueuedDatagram {
+		final ByteBuffer buffer;
+		UdpConnection socket;
+		InetSocketAddress fromAddress;
+
+		QueuedDatagram (int bufferSize) {
+			buffer = ByteBuffer.allocate(bufferSize);
+		}
+	}
+
 	/** Releases the resources used by this server, which may no longer be used. */
 	public void dispose () throws IOException {
 		close();
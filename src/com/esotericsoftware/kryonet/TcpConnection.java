@@ -40,6 +40,7 @@ class TcpConnection {
 	boolean bufferPositionFix;
 	int timeoutMillis = 12000;
 	float idleThreshold = 0.1f;
+	ConnectionDictionary writeDictionary, readDictionary;
 
 	final Serialization serialization;
 	private SelectionKey selectionKey;
@@ -59,6 +60,8 @@ class TcpConnection {
 		readBuffer.clear();
 		readBuffer.flip();
 		currentObjectLength = 0;
+		writeDictionary = null;
+		readDictionary = null;
 		try {
 			this.socketChannel = socketChannel;
 			socketChannel.configureBlocking(false);
@@ -87,6 +90,8 @@ class TcpConnection {
 		readBuffer.clear();
 		readBuffer.flip();
 		currentObjectLength = 0;
+		writeDictionary = null;
+		readDictionary = null;
 		try {
 			SocketChannel socketChannel = selector.provider().openSocketChannel();
 			Socket socket = socketChannel.socket();
@@ -206,7 +211,16 @@ class TcpConnection {
 				writeBuffer.position(writeBuffer.position() + lengthLength);
 
 				// Write data.
-				serialization.write(connection, writeBuffer, object);
+				if (object instanceof PreparedMessage) {
+					PreparedMessage message = (PreparedMessage)object;
+					// Prepared bytes can't be used when the dictionary makes the bytes specific to this connection.
+					KryoSerialization kryoSerialization = KryoSerialization.unwrap(serialization);
+					if (kryoSerialization != null && kryoSerialization.getDictionarySize() > 0)
+						serialization.write(connection, writeBuffer, message.getObject());
+					else
+						message.write(connection, serialization, writeBuffer);
+				} else
+					serialization.write(connection, writeBuffer, object);
 			} catch (Throwable ex) {
 				throw new KryoNetException("Error serializing object of type: " + object.getClass().getName(), ex);
 			}
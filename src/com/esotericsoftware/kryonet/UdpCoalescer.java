@@ -0,0 +1,71 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.BatchUDP;
+
+/** Collects serialized objects for one connection and sends as many as fit in the connection's {@link Connection#getUdpMtu() MTU}
+ * in a single datagram. The datagram size is computed for {@link KryoSerialization}, which is required, optionally wrapped by a
+ * {@link CompressingSerialization}. */
+class UdpCoalescer {
+	/** Bytes allowed for the {@link BatchUDP} class ID, the array length and a compression flag. */
+	static private final int overhead = 4;
+
+	private final Connection connection;
+	private final ArrayList<byte[]> frames = new ArrayList();
+	private int size = overhead;
+
+	public UdpCoalescer (Connection connection) {
+		this.connection = connection;
+	}
+
+	/** @return False if the object is too large to share a datagram and must be sent by itself. */
+	public synchronized boolean add (byte[] frame) {
+		// Kryo writes the length of a byte array plus one, so null can be written as zero.
+		int frameSize = varIntLength(frame.length + 1) + frame.length;
+		int mtu = connection.getUdpPayloadSize();
+		if (overhead + frameSize > mtu) return false;
+		if (size + frameSize > mtu) flush();
+		frames.add(frame);
+		size += frameSize;
+		return true;
+	}
+
+	/** Sends the collected objects, if any. */
+	public synchronized void flush () {
+		int count = frames.size();
+		if (count == 0) return;
+		BatchUDP batch = new BatchUDP();
+		batch.frames = frames.toArray(new byte[count][]);
+		frames.clear();
+		size = overhead;
+		connection.sendUDPNow(batch, null);
+	}
+
+	static private int varIntLength (int value) {
+		if (value >>> 7 == 0) return 1;
+		if (value >>> 14 == 0) return 2;
+		if (value >>> 21 == 0) return 3;
+		if (value >>> 28 == 0) return 4;
+		return 5;
+	}
+}
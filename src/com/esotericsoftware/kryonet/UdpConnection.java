@@ -23,17 +23,26 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 
+
 import static com.esotericsoftware.minlog.Log.*;
 
 /** @author Nathan Sweet <misc@n4te.com> */
 class UdpConnection {
+	/** The most datagrams read for each UDP read operation, so a flood of datagrams cannot starve the TCP connections. */
+	static final int maxDatagramsPerRead = 64;
+
 	InetSocketAddress connectedAddress;
 	DatagramChannel datagramChannel;
+	/** If not null, the token header is written in front of every datagram sent so the server can recognize the connection if its
+	 * address changes. */
+	volatile UdpToken token;
 	int keepAliveMillis = 19000;
 	final ByteBuffer readBuffer, writeBuffer;
 	private final Serialization serialization;
@@ -48,22 +57,45 @@ class UdpConnection {
 	}
 
 	public void bind (Selector selector, InetSocketAddress localPort) throws IOException {
+		bind(selector, localPort, false);
+	}
+
+	/** @param reusePort If true, SO_REUSEPORT is enabled so other sockets can bind the same port.
+	 * @return False if reusePort was requested but SO_REUSEPORT is not supported, in which case the socket is bound without it. */
+	public boolean bind (Selector selector, InetSocketAddress localPort, boolean reusePort) throws IOException {
 		close();
 		readBuffer.clear();
 		writeBuffer.clear();
 		try {
 			datagramChannel = selector.provider().openDatagramChannel();
+			if (reusePort) {
+				SocketOption<Boolean> option = reusePortOption();
+				if (option != null && datagramChannel.supportedOptions().contains(option))
+					datagramChannel.setOption(option, true);
+				else
+					reusePort = false;
+			}
 			datagramChannel.socket().bind(localPort);
 			datagramChannel.configureBlocking(false);
 			selectionKey = datagramChannel.register(selector, SelectionKey.OP_READ);
 
 			lastCommunicationTime = System.currentTimeMillis();
+			return reusePort;
 		} catch (IOException ex) {
 			close();
 			throw ex;
 		}
 	}
 
+	/** Returns StandardSocketOptions.SO_REUSEPORT, which is only available on Java 9+, or null. */
+	static SocketOption<Boolean> reusePortOption () {
+		try {
+			return (SocketOption<Boolean>)StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
 	public void connect (Selector selector, InetSocketAddress remoteAddress) throws IOException {
 		close();
 		readBuffer.clear();
@@ -72,6 +104,7 @@ class UdpConnection {
 			datagramChannel = selector.provider().openDatagramChannel();
 			datagramChannel.socket().bind(null);
 			datagramChannel.socket().connect(remoteAddress);
+			token = null;
 			datagramChannel.configureBlocking(false);
 
 			selectionKey = datagramChannel.register(selector, SelectionKey.OP_READ);
@@ -87,18 +120,31 @@ class UdpConnection {
 		}
 	}
 
+	/** Reads one datagram into the read buffer.
+	 * @return The address the datagram was received from, or null if no datagram was waiting. */
 	public InetSocketAddress readFromAddress () throws IOException {
+		return readFromAddress(readBuffer);
+	}
+
+	/** Receives a datagram into the specified buffer rather than the read buffer. */
+	InetSocketAddress readFromAddress (ByteBuffer buffer) throws IOException {
 		DatagramChannel datagramChannel = this.datagramChannel;
 		if (datagramChannel == null) throw new SocketException("Connection is closed.");
 		lastCommunicationTime = System.currentTimeMillis();
 		if(!datagramChannel.isConnected())
-			return (InetSocketAddress)datagramChannel.receive(readBuffer); // always null on Android >= 5.0
-		datagramChannel.read(readBuffer);
+			return (InetSocketAddress)datagramChannel.receive(buffer); // always null on Android >= 5.0
+		if (datagramChannel.read(buffer) <= 0) return null;
 		return connectedAddress;
 	}
 
 	public Object readObject (Connection connection) {
+		return readObject(connection, 0);
+	}
+
+	/** @param offset The number of bytes at the start of the datagram to skip, such as a {@link UdpToken} header. */
+	Object readObject (Connection connection, int offset) {
 		readBuffer.flip();
+		readBuffer.position(offset);
 		try {
 			try {
 				Object object = serialization.read(connection, readBuffer);
@@ -120,11 +166,17 @@ class UdpConnection {
 		if (datagramChannel == null) throw new SocketException("Connection is closed.");
 		synchronized (writeLock) {
 			try {
+				UdpToken token = this.token;
+				if (token != null) writeBuffer.position(UdpToken.length);
 				try {
-					serialization.write(connection, writeBuffer, object);
+					if (object instanceof PreparedMessage)
+						((PreparedMessage)object).write(connection, serialization, writeBuffer);
+					else
+						serialization.write(connection, writeBuffer, object);
 				} catch (Exception ex) {
 					throw new KryoNetException("Error serializing object of type: " + object.getClass().getName(), ex);
 				}
+				if (token != null) token.write(writeBuffer);
 				writeBuffer.flip();
 				int length = writeBuffer.limit();
 				datagramChannel.send(writeBuffer, address);
@@ -139,6 +191,69 @@ class UdpConnection {
 		}
 	}
 
+	/** Sends an object that has already been serialized. This method is thread safe.
+	 * @return The number of bytes sent, or -1 if the socket buffer was full. */
+	public int send (byte[] bytes, SocketAddress address) throws IOException {
+		DatagramChannel datagramChannel = this.datagramChannel;
+		if (datagramChannel == null) throw new SocketException("Connection is closed.");
+		synchronized (writeLock) {
+			try {
+				UdpToken token = this.token;
+				if (token != null) writeBuffer.position(UdpToken.length);
+				writeBuffer.put(bytes);
+				if (token != null) token.write(writeBuffer);
+				writeBuffer.flip();
+				int length = writeBuffer.limit();
+				datagramChannel.send(writeBuffer, address);
+
+				lastCommunicationTime = System.currentTimeMillis();
+
+				boolean wasFullWrite = !writeBuffer.hasRemaining();
+				return wasFullWrite ? length : -1;
+			} finally {
+				writeBuffer.clear();
+			}
+		}
+	}
+
+	/** Serializes an object so it can be sent inside another message. This method is thread safe. */
+	byte[] serialize (Connection connection, Object object) {
+		synchronized (writeLock) {
+			try {
+				try {
+					if (object instanceof PreparedMessage)
+						((PreparedMessage)object).write(connection, serialization, writeBuffer);
+					else
+						serialization.write(connection, writeBuffer, object);
+				} catch (Exception ex) {
+					throw new KryoNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+				}
+				writeBuffer.flip();
+				byte[] bytes = new byte[writeBuffer.limit()];
+				writeBuffer.get(bytes);
+				return bytes;
+			} finally {
+				writeBuffer.clear();
+			}
+		}
+	}
+
+	/** Deserializes an object that was {@link #serialize(Connection, Object) serialized} to be sent inside another message. */
+	Object deserialize (Connection connection, byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		try {
+			Object object = serialization.read(connection, buffer);
+			if (buffer.hasRemaining())
+				throw new KryoNetException("Incorrect number of bytes (" + buffer.remaining() + " remaining) used to deserialize object: "
+					+ object);
+			return object;
+		} catch (KryoNetException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new KryoNetException("Error during deserialization.", ex);
+		}
+	}
+
 	public void close () {
 		connectedAddress = null;
 		try {
@@ -0,0 +1,270 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.FecUDP;
+
+/** Forward error correction for the datagrams sent by one connection. Datagrams are sent in groups, and each group is followed by
+ * XOR parity. With more than one parity per group, the datagrams are interleaved across the parity, so one datagram can be
+ * rebuilt per parity, as long as the lost datagrams have different indexes modulo the parity count. Received datagrams are
+ * delivered immediately, and a lost datagram is delivered when enough of its group and parity has been received to rebuild
+ * it. */
+class UdpFec {
+	/** Bytes allowed for the {@link FecUDP} class ID, fields and the data length, written by {@link KryoSerialization}. */
+	static final int overhead = 16;
+	static final int maxGroupSize = 64;
+	/** A partial group is closed and its parity sent if it is older than this at an update. */
+	static private final int maxGroupMillis = 50;
+	static private final int maxGroups = 8;
+	/** The number of rebuilt datagrams remembered after their group is forgotten, so a late original is not delivered twice. */
+	static private final int rebuiltHistory = 256;
+
+	private final Connection connection;
+	/** 0 if datagrams are not protected when sent. */
+	volatile int groupSize;
+
+	// Sending.
+	private int parityCount;
+	private int nextGroup, sentCount;
+	private long groupTime;
+	private byte[][] parity = {};
+	private int[] parityLength = {}, paritySize = {};
+
+	// Receiving.
+	private final Group[] groups = new Group[maxGroups];
+	private int newestGroup;
+	private boolean anyReceived;
+	private final long[] rebuilt = new long[rebuiltHistory];
+	private int rebuiltIndex;
+
+	public UdpFec (Connection connection) {
+		this.connection = connection;
+		Arrays.fill(rebuilt, -1);
+	}
+
+	/** Starts a new group with the specified size.
+	 * @param groupSize The number of datagrams in each group, or 0 to stop protecting sent datagrams.
+	 * @param parityCount The number of parity datagrams sent for each group. */
+	public synchronized void setGroupSize (int groupSize, int parityCount) {
+		validate(groupSize, parityCount);
+		if (sentCount > 0) nextGroup++;
+		sentCount = 0;
+		this.parityCount = parityCount;
+		parity = new byte[parityCount][];
+		parityLength = new int[parityCount];
+		paritySize = new int[parityCount];
+		this.groupSize = groupSize;
+	}
+
+	static void validate (int groupSize, int parityCount) {
+		if (groupSize == 0) return;
+		if (groupSize < 2 || groupSize > maxGroupSize)
+			throw new IllegalArgumentException("groupSize must be 0 or >= 2 and <= " + maxGroupSize + ": " + groupSize);
+		if (parityCount < 1 || parityCount >= groupSize)
+			throw new IllegalArgumentException("parityCount must be > 0 and < groupSize: " + parityCount);
+	}
+
+	/** Returns the message to send for the serialized datagram, followed by the group's parity if the group is now complete. */
+	public synchronized FecUDP[] add (byte[] bytes) {
+		if (groupSize == 0) throw new IllegalStateException("Forward error correction is disabled.");
+		if (sentCount == 0) groupTime = System.currentTimeMillis();
+		FecUDP message = new FecUDP();
+		message.group = nextGroup;
+		message.index = sentCount;
+		message.data = bytes;
+
+		int subgroup = sentCount % parityCount;
+		byte[] accumulator = parity[subgroup];
+		if (accumulator == null || accumulator.length < bytes.length)
+			parity[subgroup] = accumulator = accumulator == null ? new byte[bytes.length] : Arrays.copyOf(accumulator, bytes.length);
+		for (int i = 0, n = bytes.length; i < n; i++)
+			accumulator[i] ^= bytes[i];
+		parityLength[subgroup] ^= bytes.length;
+		paritySize[subgroup] = Math.max(paritySize[subgroup], bytes.length);
+		sentCount++;
+
+		if (sentCount < groupSize) return new FecUDP[] {message};
+		FecUDP[] parity = closeGroup();
+		FecUDP[] messages = new FecUDP[parity.length + 1];
+		messages[0] = message;
+		System.arraycopy(parity, 0, messages, 1, parity.length);
+		return messages;
+	}
+
+	/** Returns the parity for the current group if it has been open too long, or null. */
+	public synchronized FecUDP[] update (long time) {
+		if (sentCount == 0 || time - groupTime < maxGroupMillis) return null;
+		return closeGroup();
+	}
+
+	private FecUDP[] closeGroup () {
+		int count = Math.min(sentCount, parityCount);
+		FecUDP[] messages = new FecUDP[count];
+		for (int i = 0; i < count; i++) {
+			FecUDP message = new FecUDP();
+			message.group = nextGroup;
+			message.index = sentCount + i;
+			message.count = sentCount;
+			message.parity = parityCount;
+			message.length = parityLength[i];
+			message.data = Arrays.copyOf(parity[i], paritySize[i]);
+			messages[i] = message;
+			Arrays.fill(parity[i], (byte)0);
+			parityLength[i] = 0;
+			paritySize[i] = 0;
+		}
+		nextGroup++;
+		sentCount = 0;
+		return messages;
+	}
+
+	/** Stores the message and rebuilds any lost datagrams it makes possible.
+	 * @return The serialized datagrams to deliver, or null. */
+	public synchronized ArrayList<byte[]> received (FecUDP message) {
+		if (message.index < 0 || message.index >= maxGroupSize * 2) return null;
+		Group group = group(message.group);
+		if (group == null) {
+			// The group is older than every group being kept. Data is still delivered, as any UDP datagram may arrive late, unless it
+			// was already rebuilt from parity.
+			if (message.index >= message.count && message.count > 0) return null;
+			if (wasRebuilt(message.group, message.index)) return null;
+			ArrayList<byte[]> deliver = new ArrayList(1);
+			deliver.add(message.data);
+			return deliver;
+		}
+
+		ArrayList<byte[]> deliver = null;
+		int subgroup;
+		if (message.count == 0) {
+			// Data.
+			if (message.index >= maxGroupSize || group.data[message.index] != null) return null;
+			group.data[message.index] = message.data;
+			deliver = new ArrayList(2);
+			deliver.add(message.data);
+			if (group.count == 0) return deliver;
+			subgroup = message.index % group.parityCount;
+		} else {
+			// Parity.
+			if (message.count > maxGroupSize || message.parity < 1 || message.parity >= maxGroupSize) return null;
+			subgroup = message.index - message.count;
+			if (subgroup < 0 || subgroup >= message.parity || group.parity[subgroup] != null) return null;
+			group.count = message.count;
+			group.parityCount = message.parity;
+			group.parity[subgroup] = message.data;
+			group.parityLength[subgroup] = message.length;
+		}
+
+		byte[] rebuilt = rebuild(group, subgroup);
+		if (rebuilt != null) {
+			if (deliver == null) deliver = new ArrayList(1);
+			deliver.add(rebuilt);
+		}
+		return deliver;
+	}
+
+	/** Rebuilds the datagram in the subgroup if it is the only one missing and the subgroup's parity was received. */
+	private byte[] rebuild (Group group, int subgroup) {
+		byte[] parity = group.parity[subgroup];
+		if (parity == null) return null;
+		int missing = -1;
+		for (int i = subgroup; i < group.count; i += group.parityCount) {
+			if (group.data[i] != null) continue;
+			if (missing != -1) return null;
+			missing = i;
+		}
+		if (missing == -1) return null;
+
+		int length = group.parityLength[subgroup];
+		byte[] bytes = parity.clone();
+		for (int i = subgroup; i < group.count; i += group.parityCount) {
+			byte[] data = group.data[i];
+			if (data == null) continue;
+			length ^= data.length;
+			for (int ii = 0, n = Math.min(data.length, bytes.length); ii < n; ii++)
+				bytes[ii] ^= data[ii];
+		}
+		if (length < 0 || length > bytes.length) return null;
+		bytes = Arrays.copyOf(bytes, length);
+		group.data[missing] = bytes;
+		rebuilt[rebuiltIndex] = (long)group.id << 32 | missing;
+		rebuiltIndex = (rebuiltIndex + 1) % rebuiltHistory;
+		if (TRACE) trace("kryonet", connection + " rebuilt lost UDP from parity: " + group.id + ", " + missing);
+		return bytes;
+	}
+
+	private boolean wasRebuilt (int group, int index) {
+		long key = (long)group << 32 | index;
+		for (int i = 0; i < rebuiltHistory; i++)
+			if (rebuilt[i] == key) return true;
+		return false;
+	}
+
+	/** Returns the group, creating it and forgetting the oldest group if necessary, or null if the group is too old. */
+	private Group group (int id) {
+		if (!anyReceived) {
+			anyReceived = true;
+			newestGroup = id;
+		}
+		if (id - newestGroup <= -maxGroups) return null;
+		if (id - newestGroup > 0) newestGroup = id;
+		int index = id & maxGroups - 1;
+		Group group = groups[index];
+		if (group == null) groups[index] = group = new Group();
+		if (group.id != id || !group.used) group.reset(id);
+		return group;
+	}
+
+	public synchronized void reset () {
+		nextGroup = 0;
+		sentCount = 0;
+		for (int i = 0; i < parityCount; i++) {
+			if (parity[i] != null) Arrays.fill(parity[i], (byte)0);
+			parityLength[i] = 0;
+			paritySize[i] = 0;
+		}
+		Arrays.fill(groups, null);
+		anyReceived = false;
+		Arrays.fill(rebuilt, -1);
+	}
+
+	static private class Group {
+		int id;
+		boolean used;
+		int count, parityCount;
+		final byte[][] data = new byte[maxGroupSize][];
+		final byte[][] parity = new byte[maxGroupSize - 1][];
+		final int[] parityLength = new int[maxGroupSize - 1];
+
+		void reset (int id) {
+			this.id = id;
+			used = true;
+			count = 0;
+			parityCount = 0;
+			Arrays.fill(data, null);
+			Arrays.fill(parity, null);
+		}
+	}
+}
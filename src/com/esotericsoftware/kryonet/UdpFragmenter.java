@@ -0,0 +1,182 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentRequestUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentUDP;
+
+/** Splits serialized objects larger than the connection's {@link Connection#getUdpMtu() MTU} into fragments and reassembles them on
+ * the receiving end. Only a few objects are reassembled at once, and an object is discarded if all its fragments are not received
+ * before the timeout. The most recently fragmented objects are kept so the receiver can request only the fragments it is
+ * missing. */
+class UdpFragmenter {
+	/** Bytes allowed for the {@link FragmentUDP} class ID, fields and the data length, written by {@link KryoSerialization}. */
+	static final int overhead = 16;
+	static private final int maxReassemblies = 8, sentHistory = 8;
+	static private final int timeout = 1000, rerequestDelay = 50;
+
+	private final Connection connection;
+	boolean rerequest = true;
+
+	// Sending.
+	private int nextID;
+	private final FragmentUDP[][] sent = new FragmentUDP[sentHistory][];
+
+	// Receiving.
+	private final Reassembly[] reassemblies = new Reassembly[maxReassemblies];
+
+	public UdpFragmenter (Connection connection) {
+		this.connection = connection;
+	}
+
+	/** Returns the fragments to send for the serialized object. */
+	public FragmentUDP[] split (byte[] bytes) {
+		int chunkSize = connection.getUdpPayloadSize() - overhead;
+		int count = (bytes.length + chunkSize - 1) / chunkSize;
+		FragmentUDP[] fragments = new FragmentUDP[count];
+		synchronized (this) {
+			int id = nextID++;
+			for (int i = 0, start = 0; i < count; i++, start += chunkSize) {
+				FragmentUDP fragment = new FragmentUDP();
+				fragment.id = id;
+				fragment.index = i;
+				fragment.count = count;
+				fragment.data = Arrays.copyOfRange(bytes, start, Math.min(start + chunkSize, bytes.length));
+				fragments[i] = fragment;
+			}
+			sent[id & sentHistory - 1] = fragments;
+		}
+		return fragments;
+	}
+
+	/** Returns the requested fragments that have not been forgotten, or null. */
+	public synchronized ArrayList<FragmentUDP> requested (FragmentRequestUDP request) {
+		FragmentUDP[] fragments = sent[request.id & sentHistory - 1];
+		if (fragments == null || fragments[0].id != request.id || request.missing == null) return null;
+		ArrayList<FragmentUDP> resend = new ArrayList(request.missing.length);
+		for (int index : request.missing)
+			if (index >= 0 && index < fragments.length) resend.add(fragments[index]);
+		return resend;
+	}
+
+	/** Stores the fragment.
+	 * @param maxSize The largest object that will be reassembled.
+	 * @return The serialized object if this was its last missing fragment, else null. */
+	public synchronized byte[] received (FragmentUDP fragment, int maxSize, long time) {
+		int count = fragment.count, index = fragment.index;
+		if (count <= 0 || count > maxSize || index < 0 || index >= count || fragment.data == null) return null;
+
+		Reassembly reassembly = null;
+		int free = -1;
+		for (int i = 0; i < maxReassemblies; i++) {
+			Reassembly existing = reassemblies[i];
+			if (existing == null) {
+				if (free == -1) free = i;
+			} else if (existing.id == fragment.id) {
+				reassembly = existing;
+				break;
+			}
+		}
+		if (reassembly == null) {
+			if (free == -1) {
+				// Discard the object that has waited the longest.
+				free = 0;
+				for (int i = 1; i < maxReassemblies; i++)
+					if (reassemblies[i].startTime < reassemblies[free].startTime) free = i;
+				if (TRACE) trace("kryonet", connection + " discarded incomplete UDP fragments: " + reassemblies[free].id);
+			}
+			reassembly = new Reassembly();
+			reassembly.id = fragment.id;
+			reassembly.chunks = new byte[count][];
+			reassembly.startTime = time;
+			reassemblies[free] = reassembly;
+		} else if (reassembly.chunks.length != count) return null;
+
+		reassembly.lastTime = time;
+		if (reassembly.chunks[index] != null) return null;
+		reassembly.chunks[index] = fragment.data;
+		reassembly.size += fragment.data.length;
+		if (reassembly.size > maxSize) {
+			if (DEBUG) debug("kryonet", connection + " discarded UDP fragments larger than the object buffer: " + reassembly.id);
+			remove(reassembly);
+			return null;
+		}
+		if (++reassembly.received < count) return null;
+
+		remove(reassembly);
+		byte[] bytes = new byte[reassembly.size];
+		for (int i = 0, position = 0; i < count; i++) {
+			byte[] chunk = reassembly.chunks[i];
+			System.arraycopy(chunk, 0, bytes, position, chunk.length);
+			position += chunk.length;
+		}
+		return bytes;
+	}
+
+	private void remove (Reassembly reassembly) {
+		for (int i = 0; i < maxReassemblies; i++)
+			if (reassemblies[i] == reassembly) reassemblies[i] = null;
+	}
+
+	/** Discards objects that timed out.
+	 * @return Requests for missing fragments to send to the remote end, or null. */
+	public synchronized ArrayList<FragmentRequestUDP> update (long time) {
+		ArrayList<FragmentRequestUDP> requests = null;
+		for (int i = 0; i < maxReassemblies; i++) {
+			Reassembly reassembly = reassemblies[i];
+			if (reassembly == null) continue;
+			if (time - reassembly.startTime > timeout) {
+				if (TRACE) trace("kryonet", connection + " discarded incomplete UDP fragments: " + reassembly.id);
+				reassemblies[i] = null;
+				continue;
+			}
+			// Fragments are sent together, so a pause means the rest were lost. Missing fragments are requested only once.
+			if (!rerequest || reassembly.requested || time - reassembly.lastTime < rerequestDelay) continue;
+			reassembly.requested = true;
+			byte[][] chunks = reassembly.chunks;
+			FragmentRequestUDP request = new FragmentRequestUDP();
+			request.id = reassembly.id;
+			request.missing = new int[chunks.length - reassembly.received];
+			for (int ii = 0, n = 0; ii < chunks.length; ii++)
+				if (chunks[ii] == null) request.missing[n++] = ii;
+			if (requests == null) requests = new ArrayList(1);
+			requests.add(request);
+		}
+		return requests;
+	}
+
+	public synchronized void reset () {
+		Arrays.fill(sent, null);
+		Arrays.fill(reassemblies, null);
+	}
+
+	static private class Reassembly {
+		int id;
+		byte[][] chunks;
+		int received, size;
+		long startTime, lastTime;
+		boolean requested;
+	}
+}
@@ -0,0 +1,115 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.MtuProbeUDP;
+
+/** Finds the largest datagram that reaches the remote end of one connection. Probes padded to a size are sent over UDP and the
+ * remote end replies over TCP, so a missing reply means the probe was lost. The largest possible size is tried first, then a
+ * binary search narrows the size. Java cannot set the don't fragment bit, so a probe larger than the path MTU may still arrive
+ * as IP fragments. For this reason probes are no larger than an Ethernet frame allows, and the search finds paths where large
+ * datagrams or IP fragments are dropped. If no size larger than the minimum arrives, the minimum is probed: if it arrives it
+ * becomes the MTU, otherwise no probe arrived at all and the MTU is left unchanged. */
+class UdpMtuProber {
+	/** The Ethernet MTU minus the IPv4 and UDP headers. */
+	static final int maxSize = 1472;
+	/** The smallest datagram every IPv4 host must accept, minus the IPv4 and UDP headers. */
+	static final int minSize = 548;
+	static private final int precision = 16, attempts = 2, minTimeout = 250;
+
+	private final Connection connection;
+	private boolean probing, confirmed, minimum;
+	private int low, high, probeSize, attempt;
+	private long probeTime;
+
+	public UdpMtuProber (Connection connection) {
+		this.connection = connection;
+	}
+
+	/** Begins probing for datagram sizes up to the specified size. */
+	public synchronized void start (int maxSize) {
+		probing = true;
+		confirmed = false;
+		minimum = false;
+		low = minSize;
+		high = Math.max(minSize, maxSize);
+		probeSize = high;
+		attempt = 0;
+		probeTime = 0;
+	}
+
+	/** Returns the size of the next probe to send, or -1.
+	 * @param roundTrip The measured round trip time, or -1. */
+	public synchronized int update (long time, int roundTrip) {
+		if (!probing) return -1;
+		if (probeTime != 0) {
+			if (time - probeTime < Math.max(minTimeout, roundTrip * 2)) return -1;
+			if (++attempt == attempts) {
+				if (TRACE) trace("kryonet", connection + " UDP MTU probe lost: " + probeSize);
+				high = probeSize - 1;
+				next();
+				if (!probing) return -1;
+			}
+		}
+		probeTime = time;
+		return probeSize;
+	}
+
+	public synchronized void acknowledged (MtuProbeUDP reply) {
+		if (!probing) return;
+		if (reply.size >= low && reply.size <= high) {
+			low = reply.size;
+			confirmed = true;
+		}
+		if (reply.size == probeSize) next();
+	}
+
+	private void next () {
+		attempt = 0;
+		probeTime = 0;
+		if (high - low > precision) {
+			probeSize = (low + high + 1) / 2;
+			return;
+		}
+		if (!confirmed && !minimum) {
+			// Every larger size was lost, so the configured MTU may be too. Check that the minimum arrives.
+			minimum = true;
+			probeSize = minSize;
+			return;
+		}
+		probing = false;
+		if (confirmed) {
+			connection.udpMtu = low;
+			if (DEBUG) debug("kryonet", connection + " UDP MTU: " + low);
+		} else if (DEBUG) //
+			debug("kryonet", connection + " UDP MTU probing received no replies, keeping: " + connection.udpMtu);
+	}
+
+	public synchronized boolean isProbing () {
+		return probing;
+	}
+
+	public synchronized void reset () {
+		probing = false;
+	}
+}
@@ -0,0 +1,165 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/** Spreads the datagrams sent by one connection over time using a token bucket, so a burst of objects does not overflow the
+ * socket send buffer or a router queue. Datagrams that exceed the bucket are queued and sent during later
+ * {@link EndPoint#update(int) updates}. The send rate adapts to congestion: it doubles each round trip until the first loss, then
+ * grows by one MTU per round trip (additive increase) and halves at most once per round trip when loss is detected (multiplicative
+ * decrease). Loss is signaled by a full socket send buffer, reliable UDP retransmissions, and fragment requests from the remote
+ * end. */
+class UdpPacer {
+	/** The lowest send rate in bytes per second. */
+	static final int minRate = 16 * 1024;
+	/** The bucket holds enough tokens to send for this many milliseconds at the current rate. */
+	static private final int burstMillis = 5;
+	/** The round trip time to assume before one is measured. */
+	static private final int defaultRoundTrip = 100;
+
+	private final Connection connection;
+	private final int maxRate, maxQueued;
+	private float rate, tokens;
+	private long lastRefill;
+	private final ArrayDeque<byte[]> queue = new ArrayDeque();
+	private int queuedBytes;
+	private boolean slowStart = true, limited, lost;
+	private long nextAdjust, lastDecrease;
+	private int roundTrip = defaultRoundTrip;
+
+	/** @param maxRate The highest send rate in bytes per second.
+	 * @param maxQueued The most bytes that can wait to be sent. Datagrams beyond this are dropped. */
+	public UdpPacer (Connection connection, int maxRate, int maxQueued) {
+		this.connection = connection;
+		this.maxRate = maxRate;
+		this.maxQueued = maxQueued;
+		reset();
+	}
+
+	static void validate (int maxBytesPerSecond) {
+		if (maxBytesPerSecond < 0 || (maxBytesPerSecond > 0 && maxBytesPerSecond < minRate))
+			throw new IllegalArgumentException("maxBytesPerSecond must be 0 or >= " + minRate + ": " + maxBytesPerSecond);
+	}
+
+	/** Sends the datagram if the bucket has tokens and nothing is queued, otherwise queues it.
+	 * @return The number of bytes sent or queued, or -1 if the datagram was dropped. */
+	public synchronized int send (byte[] bytes) throws IOException {
+		refill();
+		if (queue.isEmpty() && tokens >= 0) {
+			int length = connection.sendDatagram(bytes);
+			if (length != -1) {
+				tokens -= length;
+				return length;
+			}
+			// The socket buffer is full, so the datagram is queued and the rate is reduced.
+			lost(System.currentTimeMillis());
+		}
+		if (queuedBytes + bytes.length > maxQueued) {
+			if (DEBUG) debug("kryonet", connection + " was unable to send, UDP pacing queue full.");
+			return -1;
+		}
+		queue.add(bytes);
+		queuedBytes += bytes.length;
+		limited = true;
+		return bytes.length;
+	}
+
+	/** Sends queued datagrams as tokens allow and adjusts the send rate.
+	 * @param roundTrip The measured round trip time, or -1.
+	 * @return The milliseconds until more queued datagrams can be sent, or -1 if none are queued. */
+	public synchronized int update (long time, int roundTrip) throws IOException {
+		if (roundTrip > 0) this.roundTrip = Math.max(roundTrip, 10);
+		refill();
+		while (tokens >= 0) {
+			byte[] bytes = queue.peek();
+			if (bytes == null) break;
+			int length = connection.sendDatagram(bytes);
+			if (length == -1) {
+				lost(time);
+				break;
+			}
+			queue.poll();
+			queuedBytes -= bytes.length;
+			tokens -= length;
+		}
+
+		if (time >= nextAdjust) {
+			// Only grow when the rate limited sending, otherwise an idle connection would grow without bound.
+			if (limited && !lost) {
+				if (slowStart)
+					rate *= 2;
+				else
+					rate += connection.getUdpMtu() * 1000f / this.roundTrip;
+				if (rate > maxRate) rate = maxRate;
+			}
+			limited = !queue.isEmpty();
+			lost = false;
+			nextAdjust = time + this.roundTrip;
+		}
+
+		if (queue.isEmpty()) return -1;
+		if (tokens >= 0) return 0;
+		return Math.max(1, (int)Math.ceil(-tokens * 1000 / rate));
+	}
+
+	/** Halves the send rate, at most once per round trip. */
+	public synchronized void lost (long time) {
+		lost = true;
+		slowStart = false;
+		if (time - lastDecrease < roundTrip) return;
+		lastDecrease = time;
+		rate = Math.max(minRate, rate / 2);
+		if (TRACE) trace("kryonet", connection + " UDP send rate reduced: " + (int)rate);
+	}
+
+	private void refill () {
+		long now = System.nanoTime();
+		tokens = Math.min(tokens + (now - lastRefill) * rate / 1000000000f, burst());
+		lastRefill = now;
+	}
+
+	private float burst () {
+		return Math.max(connection.getUdpMtu() * 2, rate * burstMillis / 1000);
+	}
+
+	/** Returns the current send rate in bytes per second. */
+	public synchronized int getRate () {
+		return (int)rate;
+	}
+
+	public synchronized void reset () {
+		queue.clear();
+		queuedBytes = 0;
+		rate = Math.max(minRate, Math.min(maxRate, maxRate / 4));
+		tokens = burst();
+		lastRefill = System.nanoTime();
+		slowStart = true;
+		limited = false;
+		lost = false;
+		nextAdjust = 0;
+		lastDecrease = 0;
+		roundTrip = defaultRoundTrip;
+	}
+}
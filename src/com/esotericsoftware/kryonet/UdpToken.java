@@ -0,0 +1,100 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/** The header a client that {@link Client#setMigrateUDP(boolean) migrates UDP} writes in front of each datagram: the connection's
+ * token, a sequence number and a MAC of both. The token lets the server find the connection when the client's address changes,
+ * the sequence keeps a delayed datagram from changing the address back, and the MAC, keyed by a secret sent over TCP, lets the
+ * server trust the new address without a round trip. A datagram is only treated as having a header if the MAC is valid, so
+ * datagrams without one, such as {@link FrameworkMessage.RegisterUDP}, are never mistaken for it. Not thread safe. */
+class UdpToken {
+	/** The bytes written in front of each datagram. */
+	static final int length = 12;
+	static final int keyLength = 16;
+	static private final String algorithm = "HmacSHA256";
+
+	final int token;
+	private final byte[] key;
+	private Mac mac;
+	private final byte[] input = new byte[8], output = new byte[32];
+	/** When sending, the last sequence written. When receiving, the newest sequence accepted. */
+	int sequence;
+
+	public UdpToken (int token, byte[] key) {
+		this.token = token;
+		this.key = key;
+	}
+
+	/** Writes the header in front of the bytes that follow it in the buffer, which must start after {@link #length} bytes. */
+	public void write (ByteBuffer buffer) {
+		int sequence = ++this.sequence;
+		buffer.putInt(0, token);
+		buffer.putInt(4, sequence);
+		buffer.putInt(8, mac(sequence));
+	}
+
+	/** Returns true if the header at the start of the buffer has this token and a valid MAC.
+	 * @param buffer Contains the datagram from 0 to its position. */
+	public boolean check (ByteBuffer buffer) {
+		if (buffer.position() < length || buffer.getInt(0) != token) return false;
+		return buffer.getInt(8) == mac(buffer.getInt(4));
+	}
+
+	/** Returns the sequence of the header at the start of the buffer. */
+	static public int getSequence (ByteBuffer buffer) {
+		return buffer.getInt(4);
+	}
+
+	/** Returns the token of the header at the start of the buffer, or 0 if the datagram is too short to have a header. */
+	static public int getToken (ByteBuffer buffer) {
+		return buffer.position() < length ? 0 : buffer.getInt(0);
+	}
+
+	/** Returns the first 4 bytes of an HMAC of the token and sequence. */
+	private int mac (int sequence) {
+		byte[] input = this.input, output = this.output;
+		input[0] = (byte)(token >> 24);
+		input[1] = (byte)(token >> 16);
+		input[2] = (byte)(token >> 8);
+		input[3] = (byte)token;
+		input[4] = (byte)(sequence >> 24);
+		input[5] = (byte)(sequence >> 16);
+		input[6] = (byte)(sequence >> 8);
+		input[7] = (byte)sequence;
+		try {
+			if (mac == null) {
+				mac = Mac.getInstance(algorithm);
+				mac.init(new SecretKeySpec(key, algorithm));
+			}
+			mac.update(input);
+			mac.doFinal(output, 0);
+		} catch (GeneralSecurityException ex) {
+			throw new KryoNetException("Unable to compute the UDP token MAC.", ex);
+		}
+		return (output[0] & 0xff) << 24 | (output[1] & 0xff) << 16 | (output[2] & 0xff) << 8 | (output[3] & 0xff);
+	}
+}
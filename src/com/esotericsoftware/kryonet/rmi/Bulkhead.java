@@ -0,0 +1,113 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/** Limits the remote invocations of an object or method that run at once, so a slow object cannot use up the threads or stall
+ * the network thread needed by other objects. Invocations run on an executor, at most a maximum number at a time, and up to a
+ * maximum number wait in a queue. Invocations beyond that are rejected and the caller receives a
+ * {@link RejectedInvocationException}.
+ * @see ObjectSpace#setBulkhead(int, Bulkhead)
+ * @see ObjectSpace#setBulkhead(int, String, Bulkhead) */
+public class Bulkhead {
+	private final Executor executor;
+	private final int maxActive, maxQueued;
+	private final ArrayDeque<Runnable> queue = new ArrayDeque();
+	private int active;
+	private long rejected;
+
+	/** @param maxActive The most invocations run on the executor at once.
+	 * @param maxQueued The most invocations that wait to run. */
+	public Bulkhead (Executor executor, int maxActive, int maxQueued) {
+		if (executor == null) throw new IllegalArgumentException("executor cannot be null.");
+		if (maxActive < 1) throw new IllegalArgumentException("maxActive must be > 0: " + maxActive);
+		if (maxQueued < 0) throw new IllegalArgumentException("maxQueued must be >= 0: " + maxQueued);
+		this.executor = executor;
+		this.maxActive = maxActive;
+		this.maxQueued = maxQueued;
+	}
+
+	/** Runs the task on the executor, or queues it if the maximum number of tasks are running.
+	 * @return False if the task was rejected because the queue is full or the executor rejected it. */
+	public synchronized boolean execute (Runnable task) {
+		if (active < maxActive) {
+			active++;
+			if (run(task)) return true;
+			active--;
+			rejected++;
+			return false;
+		}
+		if (queue.size() >= maxQueued) {
+			rejected++;
+			return false;
+		}
+		queue.add(task);
+		return true;
+	}
+
+	private boolean run (final Runnable task) {
+		try {
+			executor.execute(new Runnable() {
+				public void run () {
+					try {
+						task.run();
+					} finally {
+						next();
+					}
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException ex) {
+			return false;
+		}
+	}
+
+	/** Runs the next queued task in place of one that finished. */
+	private synchronized void next () {
+		while (true) {
+			Runnable task = queue.poll();
+			if (task == null) {
+				active--;
+				return;
+			}
+			if (run(task)) return;
+			rejected++;
+		}
+	}
+
+	/** Returns the number of invocations running. */
+	public synchronized int getActive () {
+		return active;
+	}
+
+	/** Returns the number of invocations waiting to run. */
+	public synchronized int getQueued () {
+		return queue.size();
+	}
+
+	/** Returns the number of invocations that have been rejected. */
+	public synchronized long getRejected () {
+		return rejected;
+	}
+}
@@ -31,10 +31,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
@@ -51,6 +55,7 @@ import com.esotericsoftware.kryonet.FrameworkMessage;
 import com.esotericsoftware.kryonet.KryoNetException;
 import com.esotericsoftware.kryonet.KryoSerialization;
 import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.rmi.PendingCalls.PendingCall;
 import com.esotericsoftware.kryonet.util.ObjectIntMap;
 import com.esotericsoftware.reflectasm.MethodAccess;
 
@@ -58,44 +63,100 @@ import com.esotericsoftware.reflectasm.MethodAccess;
  * an ID. The remote end of connections that have been {@link #addConnection(Connection) added} are allowed to
  * {@link #getRemoteObject(Connection, int, Class) access} registered objects.
  * <p>
- * It costs at least 2 bytes more to use remote method invocation than just sending the parameters. If the method has a return
- * value which is not {@link RemoteObject#setNonBlocking(boolean) ignored}, an extra byte is written. If the type of a parameter
- * is not final (note primitives are final) then an extra byte is written for that parameter.
+ * It costs at least 3 bytes more to use remote method invocation than just sending the parameters. If the method has a return
+ * value which is not {@link RemoteObject#setNonBlocking(boolean) ignored}, the call ID takes up to 4 more bytes. If the type of a
+ * parameter is not final (note primitives are final) then an extra byte is written for that parameter.
  * <p>
  * ObjectSpace requires {@link KryoSerialization}.
  * @author Nathan Sweet <misc@n4te.com> */
 public class ObjectSpace {
-	static private final int returnValueMask = 1 << 7;
-	static private final int returnExceptionMask = 1 << 6;
-	static private final int responseIdMask = 0xff & ~returnValueMask & ~returnExceptionMask;
-
-	static private final Object instancesLock = new Object();
-	static ObjectSpace[] instances = new ObjectSpace[0];
-	static private final HashMap<Class, CachedMethod[]> methodCache = new HashMap();
+	static private final int returnValueMask = 1 << 1;
+	static private final int returnExceptionMask = 1 << 0;
+	static private final int callIdShift = 2;
+
+	static private final Object spacesLock = new Object();
+	/** The ObjectSpaces each connection has been added to. The arrays are copied on write. */
+	static private final ConcurrentHashMap<Connection, ObjectSpace[]> connectionSpaces = new ConcurrentHashMap();
+	/** The cached methods for each type, per Kryo instance because the method class IDs come from the Kryo registrations. */
+	static private final WeakHashMap<Kryo, ConcurrentHashMap<Class, CachedMethod[]>> methodCaches = new WeakHashMap();
 	static private boolean asm = true;
 
 	final IntMap idToObject = new IntMap();
 	final ObjectIntMap objectToID = new ObjectIntMap();
-	Connection[] connections = {};
-	final Object connectionsLock = new Object();
+	final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap());
 	Executor executor;
+	private final ConcurrentHashMap<Integer, Bulkhead> objectBulkheads = new ConcurrentHashMap();
+	private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, Bulkhead>> methodBulkheads = new ConcurrentHashMap();
+	int streamChunkSize = 64;
+	private int streamTimeout = 30000;
+	/** The streams returned by invocations from each connection that have not been fully sent, by stream ID. */
+	final ConcurrentHashMap<Connection, ConcurrentHashMap<Integer, StreamSender>> streams = new ConcurrentHashMap();
 
 	private final Listener invokeListener = new Listener() {
 		public void received (final Connection connection, Object object) {
-			if (!(object instanceof InvokeMethod)) return;
-			if (connections != null) {
-				int i = 0, n = connections.length;
-				for (; i < n; i++)
-					if (connection == connections[i]) break;
-				if (i == n) return; // The InvokeMethod message is not for a connection in this ObjectSpace.
+			if (object instanceof StreamCredit) {
+				final StreamCredit credit = (StreamCredit)object;
+				ConcurrentHashMap<Integer, StreamSender> connectionStreams = streams.get(connection);
+				if (connectionStreams == null) return;
+				final StreamSender sender = connectionStreams.get(credit.streamID);
+				if (sender == null) return;
+				if (executor == null)
+					credit(sender, credit.credit);
+				else {
+					executor.execute(new Runnable() {
+						public void run () {
+							credit(sender, credit.credit);
+						}
+					});
+				}
+				return;
+			}
+			if (object instanceof InvokeMethodBatch) {
+				if (!connections.contains(connection)) return;
+				InvokeMethod[] invocations = ((InvokeMethodBatch)object).invocations;
+				// Invocations limited by a bulkhead are invoked and responded to separately from the rest of the batch.
+				ArrayList<InvokeMethod> unlimited = new ArrayList(invocations.length);
+				for (int i = 0, n = invocations.length; i < n; i++) {
+					InvokeMethod invokeMethod = invocations[i];
+					Bulkhead bulkhead = getBulkhead(invokeMethod);
+					if (bulkhead == null)
+						unlimited.add(invokeMethod);
+					else {
+						Object target = idToObject.get(invokeMethod.objectID);
+						if (target == null) {
+							if (WARN)
+								warn("kryonet", "Ignoring remote invocation request for unknown object ID: " + invokeMethod.objectID);
+							continue;
+						}
+						invoke(connection, target, invokeMethod, bulkhead);
+					}
+				}
+				if (unlimited.isEmpty()) return;
+				if (unlimited.size() < invocations.length) invocations = unlimited.toArray(new InvokeMethod[unlimited.size()]);
+				final InvokeMethod[] batch = invocations;
+				if (executor == null)
+					invoke(connection, batch);
+				else {
+					executor.execute(new Runnable() {
+						public void run () {
+							invoke(connection, batch);
+						}
+					});
+				}
+				return;
 			}
+			if (!(object instanceof InvokeMethod)) return;
+			if (!connections.contains(connection)) return; // The InvokeMethod message is not for a connection in this ObjectSpace.
 			final InvokeMethod invokeMethod = (InvokeMethod)object;
 			final Object target = idToObject.get(invokeMethod.objectID);
 			if (target == null) {
 				if (WARN) warn("kryonet", "Ignoring remote invocation request for unknown object ID: " + invokeMethod.objectID);
 				return;
 			}
-			if (executor == null)
+			Bulkhead bulkhead = getBulkhead(invokeMethod);
+			if (bulkhead != null)
+				invoke(connection, target, invokeMethod, bulkhead);
+			else if (executor == null)
 				invoke(connection, target, invokeMethod);
 			else {
 				executor.execute(new Runnable() {
@@ -114,13 +175,6 @@ public class ObjectSpace {
 	/** Creates an ObjectSpace with no connections. Connections must be {@link #addConnection(Connection) added} to allow the
 	 * remote end of the connections to access objects in this ObjectSpace. */
 	public ObjectSpace () {
-		synchronized (instancesLock) {
-			ObjectSpace[] instances = ObjectSpace.instances;
-			ObjectSpace[] newInstances = new ObjectSpace[instances.length + 1];
-			newInstances[0] = this;
-			System.arraycopy(instances, 0, newInstances, 1, instances.length);
-			ObjectSpace.instances = newInstances;
-		}
 	}
 
 	/** Creates an ObjectSpace with the specified connection. More connections can be {@link #addConnection(Connection) added}. */
@@ -136,6 +190,89 @@ public class ObjectSpace {
 		this.executor = executor;
 	}
 
+	/** Sets the bulkhead used to invoke methods on the object with the specified ID, instead of the {@link #setExecutor(Executor)
+	 * executor}. Invocations in a {@link RemoteObject#setBatching(int, int) batch} that use a bulkhead are invoked and responded to
+	 * separately from the rest of the batch.
+	 * @param bulkhead May be null. */
+	public void setBulkhead (int objectID, Bulkhead bulkhead) {
+		if (bulkhead == null)
+			objectBulkheads.remove(objectID);
+		else
+			objectBulkheads.put(objectID, bulkhead);
+	}
+
+	/** Sets the bulkhead used to invoke the methods with the specified name on the object with the specified ID, instead of the
+	 * object's {@link #setBulkhead(int, Bulkhead) bulkhead} or the {@link #setExecutor(Executor) executor}.
+	 * @param bulkhead May be null. */
+	public void setBulkhead (int objectID, String methodName, Bulkhead bulkhead) {
+		if (methodName == null) throw new IllegalArgumentException("methodName cannot be null.");
+		synchronized (methodBulkheads) {
+			ConcurrentHashMap<String, Bulkhead> bulkheads = methodBulkheads.get(objectID);
+			if (bulkhead == null) {
+				if (bulkheads == null) return;
+				bulkheads.remove(methodName);
+				if (bulkheads.isEmpty()) methodBulkheads.remove(objectID);
+				return;
+			}
+			if (bulkheads == null) {
+				bulkheads = new ConcurrentHashMap();
+				methodBulkheads.put(objectID, bulkheads);
+			}
+			bulkheads.put(methodName, bulkhead);
+		}
+	}
+
+	/** Invokes the method with the bulkhead, or rejects the invocation if the bulkhead is full. */
+	private void invoke (final Connection connection, final Object target, final InvokeMethod invokeMethod, Bulkhead bulkhead) {
+		boolean executed = bulkhead.execute(new Runnable() {
+			public void run () {
+				invoke(connection, target, invokeMethod);
+			}
+		});
+		if (!executed) reject(connection, invokeMethod);
+	}
+
+	/** Returns the bulkhead for the invocation's method or object, or null. */
+	private Bulkhead getBulkhead (InvokeMethod invokeMethod) {
+		ConcurrentHashMap<String, Bulkhead> bulkheads = methodBulkheads.get(invokeMethod.objectID);
+		if (bulkheads != null) {
+			Bulkhead bulkhead = bulkheads.get(invokeMethod.cachedMethod.method.getName());
+			if (bulkhead != null) return bulkhead;
+		}
+		return objectBulkheads.get(invokeMethod.objectID);
+	}
+
+	/** Responds with a {@link RejectedInvocationException} to an invocation rejected by a full bulkhead, if the invocation wants
+	 * exceptions back. */
+	private void reject (Connection connection, InvokeMethod invokeMethod) {
+		Method method = invokeMethod.cachedMethod.method;
+		String message = "Invocation rejected, bulkhead is full: " + method.getDeclaringClass().getName() + "." + method.getName();
+		if (DEBUG) debug("kryonet", connection + " " + message);
+
+		int responseData = invokeMethod.responseData;
+		int responseID = responseData >>> callIdShift;
+		if (responseID == 0 || (responseData & returnExceptionMask) == 0) return;
+		InvokeMethodResult invokeMethodResult = new InvokeMethodResult();
+		invokeMethodResult.objectID = invokeMethod.objectID;
+		invokeMethodResult.responseID = responseID;
+		invokeMethodResult.result = new RejectedInvocationException(message);
+		connection.sendTCP(invokeMethodResult);
+	}
+
+	/** Sets the most values sent in each chunk of a {@link RemoteStream} returned by a remote method. Default is 64. */
+	public void setStreamChunkSize (int streamChunkSize) {
+		if (streamChunkSize < 1) throw new IllegalArgumentException("streamChunkSize must be > 0: " + streamChunkSize);
+		this.streamChunkSize = streamChunkSize;
+	}
+
+	/** Sets the milliseconds a {@link RemoteStream} returned by a remote method waits for the caller to grant credit for its first
+	 * chunk. A caller that timed out waiting for the method to return never grants credit, so the stream is then forgotten and its
+	 * values are not produced. Default is 30000. */
+	public void setStreamTimeout (int timeoutMillis) {
+		if (timeoutMillis < 1) throw new IllegalArgumentException("timeoutMillis must be > 0: " + timeoutMillis);
+		this.streamTimeout = timeoutMillis;
+	}
+
 	/** Registers an object to allow the remote end of the ObjectSpace's connections to access it using the specified ID.
 	 * <p>
 	 * If a connection is added to multiple ObjectSpaces, the same object ID should not be registered in more than one of those
@@ -166,17 +303,22 @@ public class ObjectSpace {
 		if (TRACE) trace("kryonet", "Object " + objectID + " removed from ObjectSpace: " + object);
 	}
 
+	/** Causes proxies on the remote end of this ObjectSpace's connections to clear results they have cached for the object with
+	 * the specified ID. This should be called when the result of a {@link Cacheable} method changes.
+	 * @param methodName May be null to clear the results of all methods of the object. */
+	public void invalidateCache (int objectID, String methodName) {
+		InvalidateCache invalidateCache = new InvalidateCache();
+		invalidateCache.objectID = objectID;
+		invalidateCache.methodName = methodName;
+		for (Connection connection : connections)
+			connection.sendTCP(invalidateCache);
+		if (TRACE) trace("kryonet", "Invalidated cached results for object " + objectID + ": " + methodName);
+	}
+
 	/** Causes this ObjectSpace to stop listening to the connections for method invocation messages. */
 	public void close () {
-		Connection[] connections = this.connections;
-		for (int i = 0; i < connections.length; i++)
-			connections[i].removeListener(invokeListener);
-
-		synchronized (instancesLock) {
-			ArrayList<ObjectSpace> temp = new ArrayList(Arrays.asList(instances));
-			temp.remove(this);
-			instances = temp.toArray(new ObjectSpace[temp.size()]);
-		}
+		for (Connection connection : connections)
+			removeConnection(connection);
 
 		if (TRACE) trace("kryonet", "Closed ObjectSpace.");
 	}
@@ -185,11 +327,18 @@ public class ObjectSpace {
 	public void addConnection (Connection connection) {
 		if (connection == null) throw new IllegalArgumentException("connection cannot be null.");
 
-		synchronized (connectionsLock) {
-			Connection[] newConnections = new Connection[connections.length + 1];
-			newConnections[0] = connection;
-			System.arraycopy(connections, 0, newConnections, 1, connections.length);
-			connections = newConnections;
+		synchronized (spacesLock) {
+			if (!connections.add(connection)) return;
+			ObjectSpace[] spaces = connectionSpaces.get(connection);
+			if (spaces == null)
+				spaces = new ObjectSpace[] {this};
+			else {
+				ObjectSpace[] newSpaces = new ObjectSpace[spaces.length + 1];
+				newSpaces[0] = this;
+				System.arraycopy(spaces, 0, newSpaces, 1, spaces.length);
+				spaces = newSpaces;
+			}
+			connectionSpaces.put(connection, spaces);
 		}
 
 		connection.addListener(invokeListener);
@@ -203,10 +352,19 @@ public class ObjectSpace {
 
 		connection.removeListener(invokeListener);
 
-		synchronized (connectionsLock) {
-			ArrayList<Connection> temp = new ArrayList(Arrays.asList(connections));
-			temp.remove(connection);
-			connections = temp.toArray(new Connection[temp.size()]);
+		synchronized (spacesLock) {
+			if (!connections.remove(connection)) return;
+			ArrayList<ObjectSpace> temp = new ArrayList(Arrays.asList(connectionSpaces.get(connection)));
+			temp.remove(this);
+			if (temp.isEmpty())
+				connectionSpaces.remove(connection);
+			else
+				connectionSpaces.put(connection, temp.toArray(new ObjectSpace[temp.size()]));
+		}
+		ConcurrentHashMap<Integer, StreamSender> connectionStreams = streams.remove(connection);
+		if (connectionStreams != null) {
+			for (StreamSender sender : connectionStreams.values())
+				sender.close();
 		}
 
 		if (TRACE) trace("kryonet", "Removed connection from ObjectSpace: " + connection);
@@ -217,6 +375,42 @@ public class ObjectSpace {
 	 * {@link #setExecutor(Executor) executor} has been set.
 	 * @param connection The remote side of this connection requested the invocation. */
 	protected void invoke (Connection connection, Object target, InvokeMethod invokeMethod) {
+		InvokeMethodResult invokeMethodResult = call(connection, target, invokeMethod);
+		if (invokeMethodResult == null) return;
+		int length = connection.sendTCP(invokeMethodResult);
+		if (DEBUG) debug("kryonet", connection + " sent TCP: " + invokeMethodResult.result + " (" + length + ")");
+	}
+
+	/** Invokes each method in the batch in order and sends the results back in a single message. Invocations of objects that are
+	 * not registered are ignored. */
+	private void invoke (Connection connection, InvokeMethod[] invocations) {
+		ArrayList<InvokeMethodResult> results = new ArrayList(invocations.length);
+		for (int i = 0, n = invocations.length; i < n; i++) {
+			InvokeMethod invokeMethod = invocations[i];
+			Object target = idToObject.get(invokeMethod.objectID);
+			if (target == null) {
+				if (WARN) warn("kryonet", "Ignoring remote invocation request for unknown object ID: " + invokeMethod.objectID);
+				continue;
+			}
+			InvokeMethodResult invokeMethodResult = call(connection, target, invokeMethod);
+			if (invokeMethodResult != null) results.add(invokeMethodResult);
+		}
+		if (results.isEmpty()) return;
+		Object message;
+		if (results.size() == 1)
+			message = results.get(0);
+		else {
+			InvokeMethodResultBatch resultBatch = new InvokeMethodResultBatch();
+			resultBatch.results = results.toArray(new InvokeMethodResult[results.size()]);
+			message = resultBatch;
+		}
+		int length = connection.sendTCP(message);
+		if (DEBUG) debug("kryonet", connection + " sent TCP: " + results.size() + " results (" + length + ")");
+	}
+
+	/** Invokes the method on the object.
+	 * @return The result to send back, or null if no response was requested. */
+	private InvokeMethodResult call (Connection connection, Object target, InvokeMethod invokeMethod) {
 		if (DEBUG) {
 			String argString = "";
 			if (invokeMethod.args != null) {
@@ -227,10 +421,10 @@ public class ObjectSpace {
 				+ invokeMethod.cachedMethod.method.getName() + "(" + argString + ")");
 		}
 
-		byte responseData = invokeMethod.responseData;
+		int responseData = invokeMethod.responseData;
 		boolean transmitReturnValue = (responseData & returnValueMask) == returnValueMask;
 		boolean transmitExceptions = (responseData & returnExceptionMask) == returnExceptionMask;
-		int responseID = responseData & responseIdMask;
+		int responseID = responseData >>> callIdShift;
 
 		CachedMethod cachedMethod = invokeMethod.cachedMethod;
 		Object result = null;
@@ -248,21 +442,51 @@ public class ObjectSpace {
 				ex);
 		}
 
-		if (responseID == 0) return;
+		if (responseID == 0) {
+			// The stream is never sent.
+			if (result instanceof RemoteStream) ((RemoteStream)result).close();
+			return null;
+		}
 
 		InvokeMethodResult invokeMethodResult = new InvokeMethodResult();
 		invokeMethodResult.objectID = invokeMethod.objectID;
-		invokeMethodResult.responseID = (byte)responseID;
+		invokeMethodResult.responseID = responseID;
 
 		// Do not return non-primitives if transmitReturnValue is false.
 		if (!transmitReturnValue && !invokeMethod.cachedMethod.method.getReturnType().isPrimitive()) {
+			if (result instanceof RemoteStream) ((RemoteStream)result).close();
 			invokeMethodResult.result = null;
+		} else if (result instanceof RemoteStream) {
+			// The values are sent in chunks as the caller grants credit. The stream ID is the call ID.
+			final StreamSender sender = new StreamSender(connection, responseID, (RemoteStream)result, streamChunkSize);
+			ConcurrentHashMap<Integer, StreamSender> connectionStreams = streams.get(connection);
+			if (connectionStreams == null) {
+				connectionStreams = new ConcurrentHashMap();
+				ConcurrentHashMap<Integer, StreamSender> existing = streams.putIfAbsent(connection, connectionStreams);
+				if (existing != null) connectionStreams = existing;
+			}
+			connectionStreams.put(responseID, sender);
+			// A caller that timed out waiting for this result never grants credit, so the stream is forgotten.
+			final ConcurrentHashMap<Integer, StreamSender> senders = connectionStreams;
+			sender.expiry = PendingCalls.scheduler().schedule(new Runnable() {
+				public void run () {
+					if (!sender.expire()) return;
+					senders.remove(sender.streamID, sender);
+					if (DEBUG) debug("kryonet", sender.connection + " RMI stream expired without credit: " + sender.streamID);
+				}
+			}, streamTimeout, TimeUnit.MILLISECONDS);
+			invokeMethodResult.result = Boolean.TRUE; // Tells the caller the stream is open.
 		} else {
 			invokeMethodResult.result = result;
 		}
+		return invokeMethodResult;
+	}
 
-		int length = connection.sendTCP(invokeMethodResult);
-		if (DEBUG) debug("kryonet", connection + " sent TCP: " + result + " (" + length + ")");
+	/** Sends the chunks of a stream allowed by the credit and forgets the stream when it is done. */
+	private void credit (StreamSender sender, int credit) {
+		if (!sender.credit(credit)) return;
+		ConcurrentHashMap<Integer, StreamSender> connectionStreams = streams.get(sender.connection);
+		if (connectionStreams != null) connectionStreams.remove(sender.streamID, sender);
 	}
 
 	/** Identical to {@link #getRemoteObject(Connection, int, Class...)} except returns the object cast to the specified interface
@@ -293,11 +517,40 @@ public class ObjectSpace {
 		temp[0] = RemoteObject.class;
 		System.arraycopy(ifaces, 0, temp, 1, ifaces.length);
 		return (RemoteObject)Proxy.newProxyInstance(ObjectSpace.class.getClassLoader(), temp,
-			new RemoteInvocationHandler(connection, objectID));
+			new RemoteInvocationHandler(connection, objectID, null));
+	}
+
+	/** Returns a proxy object that implements the specified asynchronous interface and {@link RemoteObject}. Each method of the
+	 * asynchronous interface that returns {@link RemoteFuture} invokes the method with the same name and parameter types of the
+	 * remote interface and returns immediately. The future is completed when the response is received, so no thread waits for
+	 * the response. Other methods are invoked the same as for {@link #getRemoteObject(Connection, int, Class...)}.
+	 * <p>
+	 * Asynchronous invocations always request the return value and exceptions, regardless of the settings on
+	 * {@link RemoteObject}, and do not change the {@link RemoteObject#getLastCallID() last call ID}. They fail with
+	 * {@link TimeoutException} if the response is not received within the {@link RemoteObject#setResponseTimeout(int) response
+	 * timeout} and with {@link KryoNetException} if the connection is closed. Over {@link RemoteObject#setUDP(boolean) UDP}, no
+	 * response is sent and the future is completed with null.
+	 * @param remoteIface The interface implemented by the remote object.
+	 * @see RemoteFuture */
+	static public <T> T getAsyncRemoteObject (Connection connection, int objectID, Class<T> asyncIface, Class remoteIface) {
+		if (connection == null) throw new IllegalArgumentException("connection cannot be null.");
+		if (asyncIface == null) throw new IllegalArgumentException("asyncIface cannot be null.");
+		if (remoteIface == null) throw new IllegalArgumentException("remoteIface cannot be null.");
+		HashMap<Method, Method> asyncMethods = new HashMap();
+		for (Method method : asyncIface.getMethods()) {
+			if (method.getReturnType() != RemoteFuture.class) continue;
+			try {
+				asyncMethods.put(method, remoteIface.getMethod(method.getName(), method.getParameterTypes()));
+			} catch (NoSuchMethodException ex) {
+				throw new IllegalArgumentException("Remote interface " + remoteIface.getName() + " has no method matching: " + method);
+			}
+		}
+		return (T)Proxy.newProxyInstance(ObjectSpace.class.getClassLoader(), new Class[] {RemoteObject.class, asyncIface},
+			new RemoteInvocationHandler(connection, objectID, asyncMethods));
 	}
 
 	/** Handles network communication when methods are invoked on a proxy. */
-	static private class RemoteInvocationHandler implements InvocationHandler {
+	static class RemoteInvocationHandler implements InvocationHandler {
 		private final Connection connection;
 		final int objectID;
 		private int timeoutMillis = 3000;
@@ -306,44 +559,32 @@ public class ObjectSpace {
 		private boolean transmitExceptions = true;
 		private boolean remoteToString;
 		private boolean udp;
-		private Byte lastResponseID;
-		private byte nextResponseId = 1;
-		private Listener responseListener;
-
-		final ReentrantLock lock = new ReentrantLock();
-		final Condition responseCondition = lock.newCondition();
-		final InvokeMethodResult[] responseTable = new InvokeMethodResult[64];
-		final boolean[] pendingResponses = new boolean[64];
-
-		public RemoteInvocationHandler (Connection connection, final int objectID) {
+		/** The call ID of the last invocation by any thread, or 0 once its response has been retrieved. */
+		private final AtomicInteger lastResponseID = new AtomicInteger();
+		/** The call ID of the last non-blocking invocation of a void method, if its call ID has not been asked for, or 0. */
+		private final AtomicInteger unclaimedCallID = new AtomicInteger();
+		/** Maps the low byte of a call ID to the call ID, for the deprecated methods that use a byte response ID. */
+		private final int[] byteResponseIDs = new int[256];
+		volatile boolean closed;
+		/** Maps methods returning {@link RemoteFuture} to the remote method they invoke, or null. */
+		private final HashMap<Method, Method> asyncMethods;
+		/** Maps each method invoked on the proxy to the cached method it invokes remotely. Copied on write, so lookups don't lock. */
+		private volatile IdentityHashMap<Method, CachedMethod> cachedMethods = new IdentityHashMap();
+		/** The result caches for {@link Cacheable} methods invoked on the proxy. Copied on write. */
+		private volatile IdentityHashMap<Method, ResultCache> resultCaches = new IdentityHashMap();
+		/** The pending calls this proxy is registered with to receive {@link InvalidateCache} messages. */
+		private PendingCalls cachePendingCalls;
+		private volatile int batchSize;
+		private int streamWindow = 4;
+		private int batchDelay;
+		private final ArrayList<InvokeMethod> batch = new ArrayList();
+		private ScheduledFuture batchFlush;
+
+		public RemoteInvocationHandler (Connection connection, final int objectID, HashMap<Method, Method> asyncMethods) {
 			super();
 			this.connection = connection;
 			this.objectID = objectID;
-
-			responseListener = new Listener() {
-				public void received (Connection connection, Object object) {
-					if (!(object instanceof InvokeMethodResult)) return;
-					InvokeMethodResult invokeMethodResult = (InvokeMethodResult)object;
-					if (invokeMethodResult.objectID != objectID) return;
-
-					int responseID = invokeMethodResult.responseID;
-					synchronized (this) {
-						if (pendingResponses[responseID]) responseTable[responseID] = invokeMethodResult;
-					}
-
-					lock.lock();
-					try {
-						responseCondition.signalAll();
-					} finally {
-						lock.unlock();
-					}
-				}
-
-				public void disconnected (Connection connection) {
-					close();
-				}
-			};
-			connection.addListener(responseListener);
+			this.asyncMethods = asyncMethods;
 		}
 
 		public Object invoke (Object proxy, Method method, Object[] args) throws Exception {
@@ -372,65 +613,106 @@ public class ObjectSpace {
 					remoteToString = (Boolean)args[0];
 					return null;
 				} else if (name.equals("waitForLastResponse")) {
-					if (lastResponseID == null) throw new IllegalStateException("There is no last response to wait for.");
-					return waitForResponse(lastResponseID);
+					int lastResponseID = this.lastResponseID.get();
+					if (lastResponseID == 0) throw new IllegalStateException("There is no last response to wait for.");
+					return waitForResponse(PendingCalls.get(connection), lastResponseID);
 				} else if (name.equals("hasLastResponse")) {
-					if (lastResponseID == null) throw new IllegalStateException("There is no last response.");
-					synchronized (this) {
-						return responseTable[lastResponseID] != null;
-					}
+					int lastResponseID = this.lastResponseID.get();
+					if (lastResponseID == 0) throw new IllegalStateException("There is no last response.");
+					return hasResponse(lastResponseID);
 				} else if (name.equals("getLastResponseID")) {
-					if (lastResponseID == null) throw new IllegalStateException("There is no last response ID.");
+					int lastResponseID = this.lastResponseID.get();
+					if (lastResponseID == 0) throw new IllegalStateException("There is no last response ID.");
+					unclaimedCallID.compareAndSet(lastResponseID, 0);
+					return (byte)lastResponseID;
+				} else if (name.equals("getLastCallID")) {
+					int lastResponseID = this.lastResponseID.get();
+					if (lastResponseID == 0) throw new IllegalStateException("There is no last response ID.");
+					unclaimedCallID.compareAndSet(lastResponseID, 0);
 					return lastResponseID;
 				} else if (name.equals("waitForResponse")) {
 					if (!transmitReturnValue && !transmitExceptions && nonBlocking)
 						throw new IllegalStateException("This RemoteObject is currently set to ignore all responses.");
-					return waitForResponse((Byte)args[0]);
+					return waitForResponse(PendingCalls.get(connection), callID(args[0]));
 				} else if (name.equals("hasResponse")) {
-					synchronized (this) {
-						return responseTable[(Byte)args[0]] != null;
-					}
+					return hasResponse(callID(args[0]));
 				} else if (name.equals("getConnection")) {
 					return connection;
+				} else if (name.equals("setBatching")) {
+					setBatching((Integer)args[0], (Integer)args[1]);
+					return null;
+				} else if (name.equals("flushBatch")) {
+					flushBatch();
+					return null;
+				} else if (name.equals("setStreamWindow")) {
+					int window = (Integer)args[0];
+					if (window < 1) throw new IllegalArgumentException("window must be > 0: " + window);
+					streamWindow = window;
+					return null;
+				} else if (name.equals("clearCache")) {
+					clearCache(null);
+					return null;
 				}
 				// Should never happen, for debugging purposes only
 				throw new KryoNetException("Invocation handler could not find RemoteObject method. Check ObjectSpace.java");
 			} else if (!remoteToString && declaringClass == Object.class && method.getName().equals("toString")) //
 				return "<proxy>";
 
+			boolean async = asyncMethods != null && method.getReturnType() == RemoteFuture.class;
+			CachedMethod cachedMethod = cachedMethods.get(method);
+			if (cachedMethod == null) cachedMethod = cacheMethod(method);
+			Method remoteMethod = cachedMethod.method;
+			if (!async && remoteMethod.getReturnType() == RemoteStream.class) return invokeStream(cachedMethod, args);
+
+			// Blocking invocations of cacheable methods may not need to be sent.
+			ResultCache resultCache = null;
+			int cacheGeneration = 0;
+			if (!async && !nonBlocking && !udp && transmitReturnValue) {
+				resultCache = resultCaches.get(method);
+				if (resultCache != null) {
+					Object result = resultCache.get(args);
+					if (result != ResultCache.miss) return result;
+					cacheGeneration = resultCache.generation();
+				}
+			}
+
 			InvokeMethod invokeMethod = new InvokeMethod();
 			invokeMethod.objectID = objectID;
 			invokeMethod.args = args;
-
-			CachedMethod[] cachedMethods = getMethods(connection.getEndPoint().getKryo(), method.getDeclaringClass());
-			for (int i = 0, n = cachedMethods.length; i < n; i++) {
-				CachedMethod cachedMethod = cachedMethods[i];
-				if (cachedMethod.method.equals(method)) {
-					invokeMethod.cachedMethod = cachedMethod;
-					break;
-				}
-			}
-			if (invokeMethod.cachedMethod == null) throw new KryoNetException("Method not found: " + method);
+			invokeMethod.cachedMethod = cachedMethod;
 
 			// A invocation doesn't need a response if it's async and no return values or exceptions are wanted back.
-			boolean needsResponse = !udp && (transmitReturnValue || transmitExceptions || !nonBlocking);
-			byte responseID = 0;
+			boolean needsResponse = !udp && (async || transmitReturnValue || transmitExceptions || !nonBlocking);
+			PendingCalls pendingCalls = PendingCalls.get(connection);
+			if (!async) {
+				// The response can now only be retrieved by call ID, which was never asked for.
+				int unclaimedCallID = this.unclaimedCallID.getAndSet(0);
+				if (unclaimedCallID != 0) pendingCalls.remove(unclaimedCallID);
+			}
+			int responseID = 0;
+			RemoteFuture future = null;
 			if (needsResponse) {
+				if (async) {
+					future = pendingCalls.addFuture(this);
+					responseID = future.getCallID();
+				} else
+					responseID = pendingCalls.add(this, nonBlocking);
 				synchronized (this) {
-					// Increment the response counter and put it into the low bits of the responseID.
-					responseID = nextResponseId++;
-					if (nextResponseId > responseIdMask) nextResponseId = 1;
-					pendingResponses[responseID] = true;
+					byteResponseIDs[responseID & 0xff] = responseID;
 				}
-				// Pack other data into the high bits.
-				byte responseData = responseID;
-				if (transmitReturnValue) responseData |= returnValueMask;
-				if (transmitExceptions) responseData |= returnExceptionMask;
+				// Pack the flags into the low bits.
+				int responseData = responseID << callIdShift;
+				if (transmitReturnValue || async) responseData |= returnValueMask;
+				if (transmitExceptions || async) responseData |= returnExceptionMask;
 				invokeMethod.responseData = responseData;
 			} else {
 				invokeMethod.responseData = 0; // A response data of 0 means to not respond.
 			}
-			int length = udp ? connection.sendUDP(invokeMethod) : connection.sendTCP(invokeMethod);
+			int length;
+			if (batchSize > 0)
+				length = batch(invokeMethod, needsResponse && !nonBlocking && !async);
+			else
+				length = udp ? connection.sendUDP(invokeMethod) : connection.sendTCP(invokeMethod);
 			if (DEBUG) {
 				String argString = "";
 				if (args != null) {
@@ -441,7 +723,17 @@ public class ObjectSpace {
 					+ "#" + method.getName() + "(" + argString + ") (" + length + ")");
 			}
 
-			lastResponseID = (byte)(invokeMethod.responseData & responseIdMask);
+			if (async) {
+				if (future == null) {
+					future = new RemoteFuture(pendingCalls, 0);
+					future.completed(null);
+				} else
+					future.timeout(timeoutMillis, "Response timed out: " + remoteMethod.getDeclaringClass().getName() + "."
+						+ remoteMethod.getName());
+				return future;
+			}
+			lastResponseID.set(responseID);
+			if (nonBlocking && method.getReturnType() == void.class) unclaimedCallID.set(responseID);
 			if (nonBlocking || udp) {
 				Class returnType = method.getReturnType();
 				if (returnType.isPrimitive()) {
@@ -457,54 +749,197 @@ public class ObjectSpace {
 				return null;
 			}
 			try {
-				Object result = waitForResponse(lastResponseID);
-				if (result != null && result instanceof Exception)
-					throw (Exception)result;
-				else
-					return result;
+				Object result = waitForResponse(pendingCalls, responseID);
+				if (result != null && result instanceof Exception) throw (Exception)result;
+				if (resultCache != null) cacheResult(resultCache, args, result, cacheGeneration);
+				return result;
 			} catch (TimeoutException ex) {
 				throw new TimeoutException("Response timed out: " + method.getDeclaringClass().getName() + "." + method.getName());
 			} finally {
-				synchronized (this) {
-					pendingResponses[responseID] = false;
-					responseTable[responseID] = null;
+				pendingCalls.remove(responseID);
+			}
+		}
+
+		/** Invokes a method that returns a {@link RemoteStream}. The invocation is always sent over TCP and waits for the remote end
+		 * to return the stream, then the stream is granted credit to send its first chunks. */
+		private RemoteStream invokeStream (CachedMethod cachedMethod, Object[] args) throws Exception {
+			PendingCalls pendingCalls = PendingCalls.get(connection);
+			int responseID = pendingCalls.add(this, false);
+
+			InvokeMethod invokeMethod = new InvokeMethod();
+			invokeMethod.objectID = objectID;
+			invokeMethod.args = args;
+			invokeMethod.cachedMethod = cachedMethod;
+			invokeMethod.responseData = responseID << callIdShift | returnValueMask | returnExceptionMask;
+			if (batchSize > 0) flushBatch();
+			int length = connection.sendTCP(invokeMethod);
+			if (DEBUG) debug("kryonet", connection + " sent TCP: " + cachedMethod.method.getName() + " stream (" + length + ")");
+
+			try {
+				Object result = waitForResponse(pendingCalls, responseID);
+				if (result instanceof Exception) throw (Exception)result;
+				if (result == null) return null;
+				StreamReceiver receiver = new StreamReceiver(connection, pendingCalls, responseID, streamWindow, timeoutMillis);
+				pendingCalls.addStream(receiver);
+				receiver.open();
+				return receiver;
+			} catch (TimeoutException ex) {
+				throw new TimeoutException("Response timed out: " + cachedMethod.method.getDeclaringClass().getName() + "."
+					+ cachedMethod.method.getName());
+			} finally {
+				pendingCalls.remove(responseID);
+			}
+		}
+
+		/** Finds the cached method for a method invoked on the proxy and adds it to {@link #cachedMethods}. */
+		private CachedMethod cacheMethod (Method method) {
+			Method remoteMethod = method;
+			if (asyncMethods != null) {
+				Method asyncMethod = asyncMethods.get(method);
+				if (asyncMethod != null) remoteMethod = asyncMethod;
+			}
+			CachedMethod[] methods = getMethods(connection.getEndPoint().getKryo(), remoteMethod.getDeclaringClass());
+			for (int i = 0, n = methods.length; i < n; i++) {
+				CachedMethod cachedMethod = methods[i];
+				if (cachedMethod.method.equals(remoteMethod)) {
+					Cacheable cacheable = remoteMethod == method ? method.getAnnotation(Cacheable.class) : null;
+					synchronized (this) {
+						IdentityHashMap<Method, CachedMethod> newCachedMethods = new IdentityHashMap(cachedMethods);
+						newCachedMethods.put(method, cachedMethod);
+						if (cacheable != null && !resultCaches.containsKey(method)) {
+							IdentityHashMap<Method, ResultCache> newResultCaches = new IdentityHashMap(resultCaches);
+							newResultCaches.put(method, new ResultCache(method.getName(), cacheable));
+							resultCaches = newResultCaches;
+						}
+						cachedMethods = newCachedMethods;
+					}
+					return cachedMethod;
 				}
 			}
+			throw new KryoNetException("Method not found: " + remoteMethod);
 		}
 
-		private Object waitForResponse (byte responseID) {
-			if (connection.getEndPoint().getUpdateThread() == Thread.currentThread())
-				throw new IllegalStateException("Cannot wait for an RMI response on the connection's update thread.");
+		private void cacheResult (ResultCache resultCache, Object[] args, Object result, int generation) {
+			// Results cached before a reconnect could be stale, and invalidations arrive through the connection's pending calls.
+			PendingCalls pendingCalls = PendingCalls.get(connection);
+			synchronized (this) {
+				if (cachePendingCalls != pendingCalls) {
+					if (cachePendingCalls != null) return; // Not connected, invalidations could be missed.
+					cachePendingCalls = pendingCalls;
+					pendingCalls.addCachingHandler(this);
+				}
+			}
+			resultCache.put(args, result, generation);
+		}
 
-			long endTime = System.currentTimeMillis() + timeoutMillis;
+		/** Clears the cached results of the methods with the specified name.
+		 * @param methodName May be null to clear all cached results. */
+		void clearCache (String methodName) {
+			for (ResultCache resultCache : resultCaches.values())
+				if (methodName == null || methodName.equals(resultCache.methodName)) resultCache.clear();
+		}
 
-			while (true) {
-				long remaining = endTime - System.currentTimeMillis();
-				InvokeMethodResult invokeMethodResult;
-				synchronized (this) {
-					invokeMethodResult = responseTable[responseID];
+		/** Called when the connection that delivers invalidations for this proxy's cached results disconnects. */
+		void cacheDisconnected () {
+			synchronized (this) {
+				cachePendingCalls = null;
+			}
+			clearCache(null);
+		}
+
+		private void setBatching (int maxInvocations, int maxDelay) {
+			if (maxInvocations < 0) throw new IllegalArgumentException("maxInvocations must be >= 0: " + maxInvocations);
+			if (maxDelay < 0) throw new IllegalArgumentException("maxDelay must be >= 0: " + maxDelay);
+			synchronized (batch) {
+				batchSize = maxInvocations;
+				batchDelay = maxDelay;
+				if (batchSize == 0) flushBatch();
+			}
+		}
+
+		/** Adds the invocation to the batch and sends the batch if it is full or flush is true.
+		 * @return The number of bytes sent, or 0 if the batch was not sent. */
+		private int batch (InvokeMethod invokeMethod, boolean flush) {
+			synchronized (batch) {
+				batch.add(invokeMethod);
+				if (flush || batch.size() >= batchSize) return flushBatch();
+				if (batch.size() == 1 && batchDelay > 0) {
+					batchFlush = PendingCalls.scheduler().schedule(new Runnable() {
+						public void run () {
+							flushBatch();
+						}
+					}, batchDelay, TimeUnit.MILLISECONDS);
 				}
-				if (invokeMethodResult != null) {
-					lastResponseID = null;
-					return invokeMethodResult.result;
-				} else {
-					if (remaining <= 0) throw new TimeoutException("Response timed out.");
-
-					lock.lock();
-					try {
-						responseCondition.await(remaining, TimeUnit.MILLISECONDS);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						throw new KryoNetException(e);
-					} finally {
-						lock.unlock();
-					}
+			}
+			return 0;
+		}
+
+		/** Sends the batched invocations, if any, in a single message.
+		 * @return The number of bytes sent. */
+		private int flushBatch () {
+			synchronized (batch) {
+				if (batchFlush != null) {
+					batchFlush.cancel(false);
+					batchFlush = null;
 				}
+				int size = batch.size();
+				if (size == 0) return 0;
+				Object message;
+				if (size == 1)
+					message = batch.get(0);
+				else {
+					InvokeMethodBatch invokeMethodBatch = new InvokeMethodBatch();
+					invokeMethodBatch.invocations = batch.toArray(new InvokeMethod[size]);
+					message = invokeMethodBatch;
+				}
+				batch.clear();
+				// Sent while holding the lock so batches are not reordered.
+				int length = udp ? connection.sendUDP(message) : connection.sendTCP(message);
+				if (DEBUG)
+					debug("kryonet", connection + " sent " + (udp ? "UDP" : "TCP") + ": " + size + " invocations (" + length + ")");
+				return length;
 			}
 		}
 
+		/** Returns the call ID for a call ID or a deprecated byte response ID. */
+		private int callID (Object responseID) {
+			if (responseID instanceof Integer) return (Integer)responseID;
+			synchronized (this) {
+				return byteResponseIDs[(Byte)responseID & 0xff];
+			}
+		}
+
+		private boolean hasResponse (int responseID) {
+			PendingCall call = PendingCalls.get(connection).get(responseID);
+			return call != null && call.result != null;
+		}
+
+		/** @param pendingCalls The pending calls the call was added to. They are not looked up again, because a connection that is
+		 *           not connected has a new instance each time. */
+		private Object waitForResponse (PendingCalls pendingCalls, int responseID) {
+			if (connection.getEndPoint().getUpdateThread() == Thread.currentThread())
+				throw new IllegalStateException("Cannot wait for an RMI response on the connection's update thread.");
+
+			if (batchSize > 0) flushBatch();
+
+			PendingCall call = pendingCalls.get(responseID);
+			if (call == null) throw new IllegalStateException("No response is pending for call ID: " + responseID);
+
+			InvokeMethodResult invokeMethodResult;
+			try {
+				invokeMethodResult = call.await(timeoutMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KryoNetException(e);
+			}
+			if (invokeMethodResult == null) throw new TimeoutException("Response timed out.");
+			lastResponseID.compareAndSet(responseID, 0);
+			pendingCalls.remove(responseID);
+			return invokeMethodResult.result;
+		}
+
 		void close () {
-			connection.removeListener(responseListener);
+			closed = true;
 		}
 	}
 
@@ -514,10 +949,9 @@ public class ObjectSpace {
 		public CachedMethod cachedMethod;
 		public Object[] args;
 
-		// The top bits of the ID indicate if the remote invocation should respond with return values and exceptions, respectively.
-		// The remaining bites are a counter. This means up to 63 responses can be stored before undefined behavior occurs due to
-		// possible duplicate IDs. A response data of 0 means to not respond.
-		public byte responseData;
+		// The low bits indicate if the remote invocation should respond with return values and exceptions, respectively. The
+		// remaining bits are the call ID, which is unique for the connection. A response data of 0 means to not respond.
+		public int responseData;
 
 		public void write (Kryo kryo, Output output) {
 			output.writeInt(objectID, true);
@@ -534,7 +968,7 @@ public class ObjectSpace {
 					kryo.writeClassAndObject(output, args[i]);
 			}
 
-			output.writeByte(responseData);
+			output.writeInt(responseData, true);
 		}
 
 		public void read (Kryo kryo, Input input) {
@@ -562,19 +996,88 @@ public class ObjectSpace {
 					args[i] = kryo.readClassAndObject(input);
 			}
 
-			responseData = input.readByte();
+			responseData = input.readInt(true);
+		}
+	}
+
+	/** Internal message to send a chunk of the values of a {@link RemoteStream}. */
+	static public class StreamChunk implements FrameworkMessage {
+		public int streamID;
+		public Object[] elements;
+		/** True if this is the last chunk of the stream. */
+		public boolean last;
+		/** True if producing the values failed. */
+		public boolean failed;
+	}
+
+	/** Internal message to grant the sender of a {@link RemoteStream} credit to send more chunks. A credit of 0 closes the
+	 * stream. */
+	static public class StreamCredit implements FrameworkMessage {
+		public int streamID;
+		public int credit;
+	}
+
+	/** Internal message to clear the results of {@link Cacheable} methods cached by proxies for a remote object. */
+	static public class InvalidateCache implements FrameworkMessage {
+		public int objectID;
+		/** May be null to clear the results of all methods. */
+		public String methodName;
+	}
+
+	/** Internal message to invoke several methods remotely, in order. */
+	static public class InvokeMethodBatch implements FrameworkMessage, KryoSerializable {
+		public InvokeMethod[] invocations;
+
+		public void write (Kryo kryo, Output output) {
+			output.writeInt(invocations.length, true);
+			for (int i = 0, n = invocations.length; i < n; i++)
+				invocations[i].write(kryo, output);
+		}
+
+		public void read (Kryo kryo, Input input) {
+			invocations = new InvokeMethod[input.readInt(true)];
+			for (int i = 0, n = invocations.length; i < n; i++) {
+				invocations[i] = new InvokeMethod();
+				invocations[i].read(kryo, input);
+			}
+		}
+	}
+
+	/** Internal message to return the results of a batch of remotely invoked methods. */
+	static public class InvokeMethodResultBatch implements FrameworkMessage, KryoSerializable {
+		public InvokeMethodResult[] results;
+
+		public void write (Kryo kryo, Output output) {
+			output.writeInt(results.length, true);
+			for (int i = 0, n = results.length; i < n; i++)
+				kryo.writeObject(output, results[i]);
+		}
+
+		public void read (Kryo kryo, Input input) {
+			results = new InvokeMethodResult[input.readInt(true)];
+			for (int i = 0, n = results.length; i < n; i++)
+				results[i] = kryo.readObject(input, InvokeMethodResult.class);
 		}
 	}
 
 	/** Internal message to return the result of a remotely invoked method. */
 	static public class InvokeMethodResult implements FrameworkMessage {
 		public int objectID;
-		public byte responseID;
+		/** The call ID of the invocation. */
+		public int responseID;
 		public Object result;
 	}
 
 	static CachedMethod[] getMethods (Kryo kryo, Class type) {
-		CachedMethod[] cachedMethods = methodCache.get(type); // Maybe should cache per Kryo instance?
+		ConcurrentHashMap<Class, CachedMethod[]> methodCache;
+		synchronized (methodCaches) {
+			methodCache = methodCaches.get(kryo);
+			if (methodCache == null) {
+				methodCache = new ConcurrentHashMap();
+				methodCaches.put(kryo, methodCache);
+			}
+		}
+		CachedMethod[] cachedMethods = methodCache.get(type);
 		if (cachedMethods != null) return cachedMethods;
 
 		ArrayList<Method> allMethods = new ArrayList();
@@ -642,24 +1145,19 @@ public class ObjectSpace {
 
 			cachedMethods[i] = cachedMethod;
 		}
-		methodCache.put(type, cachedMethods);
-		return cachedMethods;
+		CachedMethod[] existing = methodCache.putIfAbsent(type, cachedMethods);
+		return existing != null ? existing : cachedMethods;
 	}
 
 	/** Returns the first object registered with the specified ID in any of the ObjectSpaces the specified connection belongs
 	 * to. */
 	static Object getRegisteredObject (Connection connection, int objectID) {
-		ObjectSpace[] instances = ObjectSpace.instances;
-		for (int i = 0, n = instances.length; i < n; i++) {
-			ObjectSpace objectSpace = instances[i];
-			// Check if the connection is in this ObjectSpace.
-			Connection[] connections = objectSpace.connections;
-			for (int j = 0; j < connections.length; j++) {
-				if (connections[j] != connection) continue;
-				// Find an object with the objectID.
-				Object object = objectSpace.idToObject.get(objectID);
-				if (object != null) return object;
-			}
+		ObjectSpace[] spaces = connectionSpaces.get(connection);
+		if (spaces == null) return null;
+		for (int i = 0, n = spaces.length; i < n; i++) {
+			// Find an object with the objectID.
+			Object object = spaces[i].idToObject.get(objectID);
+			if (object != null) return object;
 		}
 		return null;
 	}
@@ -667,17 +1165,12 @@ public class ObjectSpace {
 	/** Returns the first ID registered for the specified object with any of the ObjectSpaces the specified connection belongs to,
 	 * or Integer.MAX_VALUE if not found. */
 	static int getRegisteredID (Connection connection, Object object) {
-		ObjectSpace[] instances = ObjectSpace.instances;
-		for (int i = 0, n = instances.length; i < n; i++) {
-			ObjectSpace objectSpace = instances[i];
-			// Check if the connection is in this ObjectSpace.
-			Connection[] connections = objectSpace.connections;
-			for (int j = 0; j < connections.length; j++) {
-				if (connections[j] != connection) continue;
-				// Find an ID with the object.
-				int id = objectSpace.objectToID.get(object, Integer.MAX_VALUE);
-				if (id != Integer.MAX_VALUE) return id;
-			}
+		ObjectSpace[] spaces = connectionSpaces.get(connection);
+		if (spaces == null) return Integer.MAX_VALUE;
+		for (int i = 0, n = spaces.length; i < n; i++) {
+			// Find an ID with the object.
+			int id = spaces[i].objectToID.get(object, Integer.MAX_VALUE);
+			if (id != Integer.MAX_VALUE) return id;
 		}
 		return Integer.MAX_VALUE;
 	}
@@ -693,16 +1186,34 @@ public class ObjectSpace {
 			public void write (Kryo kryo, Output output, InvokeMethodResult result) {
 				super.write(kryo, output, result);
 				output.writeInt(result.objectID, true);
+				output.writeInt(result.responseID, true);
 			}
 
 			public InvokeMethodResult read (Kryo kryo, Input input, Class type) {
 				InvokeMethodResult result = super.read(kryo, input, type);
 				result.objectID = input.readInt(true);
+				result.responseID = input.readInt(true);
 				return result;
 			}
 		};
 		resultSerializer.removeField("objectID");
+		resultSerializer.removeField("responseID");
 		kryo.register(InvokeMethodResult.class, resultSerializer);
+		kryo.register(InvokeMethodBatch.class);
+		kryo.register(InvokeMethodResultBatch.class);
+		kryo.register(InvalidateCache.class);
+		kryo.register(StreamChunk.class);
+		kryo.register(StreamCredit.class);
+		// Only the message is sent, so the exception can be transmitted without registering its stack trace and causes.
+		kryo.register(RejectedInvocationException.class, new Serializer<RejectedInvocationException>() {
+			public void write (Kryo kryo, Output output, RejectedInvocationException exception) {
+				output.writeString(exception.getMessage());
+			}
+
+			public RejectedInvocationException read (Kryo kryo, Input input, Class<RejectedInvocationException> type) {
+				return new RejectedInvocationException(input.readString());
+			}
+		});
 
 		kryo.register(InvocationHandler.class, new Serializer() {
 			public void write (Kryo kryo, Output output, Object object) {
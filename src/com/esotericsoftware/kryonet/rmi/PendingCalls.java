@@ -0,0 +1,245 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetException;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.InvalidateCache;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.InvokeMethodResult;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.InvokeMethodResultBatch;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.RemoteInvocationHandler;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.StreamChunk;
+
+/** The remote method invocations made over one connection that are waiting for a response. Call IDs are unique per connection,
+ * so any number of invocations from any number of proxies can be in flight at once. A single listener per connection routes each
+ * {@link InvokeMethodResult} by call ID to the proxy that made the call, so the number of proxies does not affect the cost of
+ * receiving a message. */
+class PendingCalls {
+	/** Call IDs are sent in the bits above the response flags, so they wrap before using the sign bit. */
+	static final int maxCallID = 0x1fffffff;
+	/** The most non-blocking calls per connection that are stored until their response is retrieved. When exceeded, the oldest
+	 * call is forgotten, so responses that are never retrieved don't accumulate. */
+	static final int maxStored = 8192;
+
+	static private final ConcurrentHashMap<Connection, PendingCalls> instances = new ConcurrentHashMap();
+	static private ScheduledThreadPoolExecutor scheduler;
+
+	private final AtomicInteger nextCallID = new AtomicInteger();
+	private final ConcurrentHashMap<Integer, PendingCall> calls = new ConcurrentHashMap();
+	/** The IDs of the last {@link #maxStored} non-blocking calls, oldest first. Some may already have been retrieved. */
+	private final ArrayDeque<Integer> stored = new ArrayDeque();
+	/** The streams returned by calls that have not received their last chunk, by stream ID. */
+	private final ConcurrentHashMap<Integer, StreamReceiver> streams = new ConcurrentHashMap();
+	/** The proxies on the connection that have cached results. Weak, so proxies that are no longer used can be collected. */
+	private final Set<RemoteInvocationHandler> cachingHandlers = Collections.newSetFromMap(new WeakHashMap());
+
+	private final Listener dispatcher = new Listener() {
+		public void received (Connection connection, Object object) {
+			if (object instanceof InvokeMethodResult)
+				PendingCalls.this.received((InvokeMethodResult)object);
+			else if (object instanceof InvokeMethodResultBatch) {
+				InvokeMethodResult[] results = ((InvokeMethodResultBatch)object).results;
+				for (int i = 0, n = results.length; i < n; i++)
+					PendingCalls.this.received(results[i]);
+			} else if (object instanceof StreamChunk) {
+				StreamChunk chunk = (StreamChunk)object;
+				StreamReceiver receiver = streams.get(chunk.streamID);
+				if (receiver != null) receiver.received(chunk);
+			} else if (object instanceof InvalidateCache) {
+				InvalidateCache invalidateCache = (InvalidateCache)object;
+				for (RemoteInvocationHandler handler : cachingHandlers())
+					if (handler.objectID == invalidateCache.objectID) handler.clearCache(invalidateCache.methodName);
+			}
+		}
+
+		public void disconnected (Connection connection) {
+			remove(connection);
+		}
+	};
+
+	/** Returns a new call ID and stores the call until its response is retrieved.
+	 * @param handler The proxy making the call.
+	 * @param nonBlocking If true, the call is forgotten once {@link #maxStored} newer non-blocking calls have been made, because
+	 *           no thread is waiting for its response. */
+	public int add (RemoteInvocationHandler handler, boolean nonBlocking) {
+		PendingCall call = new PendingCall(handler);
+		int callID;
+		while (true) {
+			callID = nextCallID.incrementAndGet() & maxCallID;
+			if (callID == 0) continue; // A call ID of 0 means to not respond.
+			if (calls.putIfAbsent(callID, call) == null) break;
+		}
+		if (nonBlocking) {
+			synchronized (stored) {
+				stored.add(callID);
+				if (stored.size() > maxStored) calls.remove(stored.poll());
+			}
+		}
+		return callID;
+	}
+
+	/** Returns a future for a new call ID. The call is removed when the future is done.
+	 * @param handler The proxy making the call. */
+	public RemoteFuture addFuture (RemoteInvocationHandler handler) {
+		int callID = add(handler, false);
+		RemoteFuture future = new RemoteFuture(this, callID);
+		calls.get(callID).future = future;
+		return future;
+	}
+
+	/** Stores the result if the call is pending, or completes the call's future.
+	 * @return False if no call with the result's ID is pending. */
+	public boolean received (InvokeMethodResult result) {
+		PendingCall call = calls.get(result.responseID);
+		if (call == null) return false;
+		if (call.handler.closed) {
+			calls.remove(result.responseID);
+			return false;
+		}
+		RemoteFuture future = call.future;
+		if (future == null) {
+			call.received(result);
+			return true;
+		}
+		calls.remove(result.responseID);
+		if (result.result instanceof Exception)
+			future.failed((Exception)result.result);
+		else
+			future.completed(result.result);
+		return true;
+	}
+
+	/** Returns the pending call, or null. */
+	public PendingCall get (int callID) {
+		return calls.get(callID);
+	}
+
+	public void remove (int callID) {
+		calls.remove(callID);
+	}
+
+	public int size () {
+		return calls.size();
+	}
+
+	public void addStream (StreamReceiver receiver) {
+		streams.put(receiver.streamID, receiver);
+	}
+
+	public void removeStream (int streamID) {
+		streams.remove(streamID);
+	}
+
+	/** Registers a proxy to have its cached results cleared by {@link InvalidateCache} messages and on disconnect. */
+	public void addCachingHandler (RemoteInvocationHandler handler) {
+		synchronized (cachingHandlers) {
+			cachingHandlers.add(handler);
+		}
+	}
+
+	private RemoteInvocationHandler[] cachingHandlers () {
+		synchronized (cachingHandlers) {
+			return cachingHandlers.toArray(new RemoteInvocationHandler[cachingHandlers.size()]);
+		}
+	}
+
+	/** Returns the pending calls for the connection, creating them and adding their listener to the connection if necessary. If
+	 * the connection is not connected, the pending calls returned are not stored. */
+	static PendingCalls get (Connection connection) {
+		PendingCalls pendingCalls = instances.get(connection);
+		if (pendingCalls == null) {
+			pendingCalls = new PendingCalls();
+			if (!connection.isConnected()) return pendingCalls;
+			PendingCalls existing = instances.putIfAbsent(connection, pendingCalls);
+			if (existing != null) return existing;
+			connection.addListener(pendingCalls.dispatcher);
+		}
+		return pendingCalls;
+	}
+
+	/** Forgets the pending calls for the connection, which has disconnected, and fails their futures. */
+	static void remove (Connection connection) {
+		PendingCalls pendingCalls = instances.remove(connection);
+		if (pendingCalls == null) return;
+		connection.removeListener(pendingCalls.dispatcher);
+		for (RemoteInvocationHandler handler : pendingCalls.cachingHandlers())
+			handler.cacheDisconnected();
+		for (StreamReceiver receiver : pendingCalls.streams.values())
+			receiver.disconnected();
+		for (PendingCall call : pendingCalls.calls.values()) {
+			RemoteFuture future = call.future;
+			if (future != null) future.failed(new KryoNetException("Connection is closed: " + connection));
+		}
+	}
+
+	/** Returns the daemon thread shared by all connections to time out calls and flush batches. */
+	static synchronized ScheduledThreadPoolExecutor scheduler () {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, "RMI scheduler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+		return scheduler;
+	}
+
+	static class PendingCall {
+		final RemoteInvocationHandler handler;
+		volatile InvokeMethodResult result;
+		volatile RemoteFuture future;
+
+		PendingCall (RemoteInvocationHandler handler) {
+			this.handler = handler;
+		}
+
+		/** Stores the result and wakes only the threads waiting for this call. */
+		synchronized void received (InvokeMethodResult result) {
+			this.result = result;
+			notifyAll();
+		}
+
+		/** Waits for the result.
+		 * @return The result, or null if it was not received within the timeout. */
+		synchronized InvokeMethodResult await (long timeoutMillis) throws InterruptedException {
+			long endTime = System.currentTimeMillis() + timeoutMillis;
+			while (result == null) {
+				long remaining = endTime - System.currentTimeMillis();
+				if (remaining <= 0) return null;
+				wait(remaining);
+			}
+			return result;
+		}
+	}
+}
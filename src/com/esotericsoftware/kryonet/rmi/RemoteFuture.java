@@ -0,0 +1,173 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.kryonet.KryoNetException;
+
+/** The result of a method invoked on a proxy from
+ * {@link ObjectSpace#getAsyncRemoteObject(com.esotericsoftware.kryonet.Connection, int, Class, Class) getAsyncRemoteObject}.
+ * The future is completed on the connection's update thread when the response is received, or fails with a
+ * {@link TimeoutException} if the response is not received within the {@link RemoteObject#setResponseTimeout(int) response
+ * timeout}. No thread waits for the response unless {@link #get()} is called. */
+public class RemoteFuture<T> implements Future<T> {
+	private final PendingCalls pendingCalls;
+	private final int callID;
+	private ScheduledFuture timeout;
+	private ArrayList<Callback<? super T>> callbacks;
+	private boolean done, cancelled;
+	private Object result;
+	private Throwable exception;
+
+	RemoteFuture (PendingCalls pendingCalls, int callID) {
+		this.pendingCalls = pendingCalls;
+		this.callID = callID;
+	}
+
+	/** Returns the call ID of the invocation. */
+	public int getCallID () {
+		return callID;
+	}
+
+	/** Adds a callback that is notified when the future completes. If the future has already completed, the callback is notified
+	 * immediately on the calling thread, otherwise it is notified on the thread that completes the future. Callbacks should not
+	 * block, as that is usually the connection's update thread. */
+	public void addCallback (Callback<? super T> callback) {
+		if (callback == null) throw new IllegalArgumentException("callback cannot be null.");
+		synchronized (this) {
+			if (!done) {
+				if (callbacks == null) callbacks = new ArrayList(1);
+				callbacks.add(callback);
+				return;
+			}
+		}
+		call(callback);
+	}
+
+	public boolean cancel (boolean mayInterruptIfRunning) {
+		pendingCalls.remove(callID); // The call is already removed if the future is done.
+		return finish(null, new CancellationException(), true);
+	}
+
+	public synchronized boolean isCancelled () {
+		return cancelled;
+	}
+
+	public synchronized boolean isDone () {
+		return done;
+	}
+
+	public synchronized T get () throws InterruptedException, ExecutionException {
+		while (!done)
+			wait();
+		return result();
+	}
+
+	public synchronized T get (long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+		java.util.concurrent.TimeoutException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		while (!done) {
+			long remaining = end - System.nanoTime();
+			if (remaining <= 0) throw new java.util.concurrent.TimeoutException();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return result();
+	}
+
+	private T result () throws ExecutionException {
+		if (cancelled) throw new CancellationException();
+		if (exception != null) throw new ExecutionException(exception);
+		return (T)result;
+	}
+
+	/** Fails the future with a {@link TimeoutException} if it is not completed within the specified time. */
+	void timeout (int millis, final String message) {
+		ScheduledFuture timeout = PendingCalls.scheduler().schedule(new Runnable() {
+			public void run () {
+				pendingCalls.remove(callID);
+				failed(new TimeoutException(message));
+			}
+		}, millis, TimeUnit.MILLISECONDS);
+		synchronized (this) {
+			if (!done) {
+				this.timeout = timeout;
+				return;
+			}
+		}
+		timeout.cancel(false);
+	}
+
+	/** @return False if the future was already done. */
+	boolean completed (Object result) {
+		return finish(result, null, false);
+	}
+
+	/** @return False if the future was already done. */
+	boolean failed (Throwable exception) {
+		return finish(null, exception, false);
+	}
+
+	private boolean finish (Object result, Throwable exception, boolean cancelled) {
+		ArrayList<Callback<? super T>> callbacks;
+		synchronized (this) {
+			if (done) return false;
+			done = true;
+			this.cancelled = cancelled;
+			this.result = result;
+			this.exception = exception;
+			callbacks = this.callbacks;
+			this.callbacks = null;
+			if (timeout != null) {
+				timeout.cancel(false);
+				timeout = null;
+			}
+			notifyAll();
+		}
+		if (callbacks != null) {
+			for (int i = 0, n = callbacks.size(); i < n; i++)
+				call(callbacks.get(i));
+		}
+		return true;
+	}
+
+	private void call (Callback<? super T> callback) {
+		if (exception == null)
+			callback.completed((T)result);
+		else
+			callback.failed(exception);
+	}
+
+	/** Notified when a {@link RemoteFuture} completes. */
+	static public interface Callback<T> {
+		/** Called with the return value of the remote method. */
+		public void completed (T result);
+
+		/** Called with the exception thrown by the remote method, a {@link TimeoutException}, a {@link KryoNetException} if the
+		 * connection was closed, or a {@link CancellationException}. */
+		public void failed (Throwable exception);
+	}
+}
@@ -32,8 +32,10 @@ public interface RemoteObject {
 	 * @param nonBlocking If false, the invoking thread will wait for the remote method to return or timeout (default). If true,
 	 *           the invoking thread will not wait for a response. The method will return immediately and the return value should
 	 *           be ignored. If they are being transmitted, the return value or any thrown exception can later be retrieved with
-	 *           {@link #waitForLastResponse()} or {@link #waitForResponse(byte)}. The responses will be stored until retrieved, so
-	 *           each method call should have a matching retrieve. */
+	 *           {@link #waitForLastResponse()} or {@link #waitForResponse(int)}. The responses will be stored until retrieved, so
+	 *           each method call should have a matching retrieve. Only the last 8192 non-blocking calls on a connection are
+	 *           stored. The response to a method with a void return value is forgotten when the next method is invoked on this
+	 *           proxy, unless its call ID was first asked for with {@link #getLastCallID()}. */
 	public void setNonBlocking (boolean nonBlocking);
 
 	/** Sets whether return values are sent back when invoking a remote method. Default is true.
@@ -70,21 +72,58 @@ public interface RemoteObject {
 	 * {@link #waitForLastResponse()} without blocking. */
 	public Object hasLastResponse ();
 
-	/** Gets the ID of response for the last method invocation. */
+	/** Gets the low byte of the call ID for the last method invocation.
+	 * @deprecated Use {@link #getLastCallID()}. */
+	@Deprecated
 	public byte getLastResponseID ();
 
+	/** Gets the call ID for the last method invocation. Call IDs are unique for the connection, so any number of non-blocking calls
+	 * can wait for a response. */
+	public int getLastCallID ();
+
+	/** Waits for the response to the method invocation with the specified low byte of its call ID. This only identifies the call if
+	 * fewer than 256 calls were made on the connection since, so it may return the wrong response.
+	 * @deprecated Use {@link #waitForResponse(int)}. */
+	@Deprecated
+	public Object waitForResponse (byte responseID);
+
 	/** Waits for the specified method invocation response to be received or the response timeout to be reached. Must not be called
-	 * from the connection's update thread. Response IDs use a six bit identifier, with one identifier reserved for "no response".
-	 * This means that this method should be called to get the result for a non-blocking call before an additional 63 non-blocking
-	 * calls are made, or risk undefined behavior due to identical IDs.
+	 * from the connection's update thread. Once retrieved, the response is forgotten.
+	 * @param callID See {@link #getLastCallID()}.
 	 * @see ObjectSpace#getRemoteObject(com.esotericsoftware.kryonet.Connection, int, Class...) */
-	public Object waitForResponse (byte responseID);
+	public Object waitForResponse (int callID);
 
-	/** Returns true if the response to the specified method invocation has been received and can be retrieved using
-	 * {@link #waitForResponse(byte)} without blocking. */
+	/** @deprecated Use {@link #hasResponse(int)}. */
+	@Deprecated
 	public Object hasResponse (byte responseID);
 
-	/** Causes this RemoteObject to stop listening to the connection for method invocation response messages. */
+	/** Returns true if the response to the specified method invocation has been received and can be retrieved using
+	 * {@link #waitForResponse(int)} without blocking. */
+	public boolean hasResponse (int callID);
+
+	/** Sets whether method invocations are collected and sent together in a single message. The batch is sent when it holds
+	 * maxInvocations invocations, maxDelay milliseconds after the first invocation was added to it, when {@link #flushBatch()} is
+	 * called, or when a response is waited for. The responses to a batch are also sent back in a single message. Default is 0, 0.
+	 * <p>
+	 * A blocking invocation that needs a response sends the batch immediately, so batching is most useful with
+	 * {@link #setNonBlocking(boolean) non-blocking} invocations.
+	 * @param maxInvocations The most invocations in a batch, or 0 to disable batching. Disabling batching sends any batched
+	 *           invocations.
+	 * @param maxDelay The most milliseconds an invocation waits in the batch, or 0 to wait until the batch is full or flushed. */
+	public void setBatching (int maxInvocations, int maxDelay);
+
+	/** Sends any batched method invocations.
+	 * @see #setBatching(int, int) */
+	public void flushBatch ();
+
+	/** Sets the most chunks of a {@link RemoteStream} returned by a remote method that are buffered before they are iterated.
+	 * Default is 4. */
+	public void setStreamWindow (int chunks);
+
+	/** Clears the results of {@link Cacheable} methods cached by this RemoteObject. */
+	public void clearCache ();
+
+	/** Causes this RemoteObject to ignore method invocation response messages received from the connection. */
 	public void close ();
 
 	/** Returns the local connection for this remote object. */
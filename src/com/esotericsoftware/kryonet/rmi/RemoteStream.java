@@ -0,0 +1,98 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/** A sequence of values returned by a remote method in chunks, so results too large for one message can be returned and memory on
+ * both ends stays bounded. A remote interface method declares RemoteStream as its return type and the implementation returns
+ * {@link #of(Iterator)}. The proxy returns a stream that receives the values as they are iterated.
+ * <p>
+ * Flow control is credit based: the remote end sends a chunk of at most {@link ObjectSpace#setStreamChunkSize(int) chunk size}
+ * values only when the caller has room for it in its {@link RemoteObject#setStreamWindow(int) window}. Values are produced from
+ * the implementation's iterator only as chunks are sent, on the thread that invokes the ObjectSpace's methods: its
+ * {@link ObjectSpace#setExecutor(java.util.concurrent.Executor) executor}, or the connection's update thread if none is set. An
+ * iterator that blocks or is slow to produce values requires an executor, the same as a slow method does. A stream that the
+ * caller never grants credit is forgotten after the {@link ObjectSpace#setStreamTimeout(int) stream timeout}.
+ * <p>
+ * Iterating the received stream blocks until the next chunk arrives and throws {@link TimeoutException} if it does not arrive
+ * within the {@link RemoteObject#setResponseTimeout(int) response timeout}. It must not be iterated on the connection's update
+ * thread. A stream that is not iterated to the end should be {@link #close() closed} so the remote end stops producing values.
+ * <p>
+ * The remote end closes the implementation's stream when it is done sending it for any reason: the last value was sent, the
+ * caller closed the stream, the stream expired or the connection was removed. An iterator or iterable that is {@link Closeable}
+ * is closed with it, so a stream backed by a file or cursor does not leak. */
+public abstract class RemoteStream<T> implements Iterator<T>, Closeable {
+	/** Returns a stream of the values from the iterator, to be returned from a remote method. The iterator is closed with the
+	 * stream if it is {@link Closeable}. */
+	static public <T> RemoteStream<T> of (Iterator<? extends T> values) {
+		if (values == null) throw new IllegalArgumentException("values cannot be null.");
+		return new Source(values, values);
+	}
+
+	/** Returns a stream of the values from the iterable, to be returned from a remote method. The iterable is closed with the
+	 * stream if it is {@link Closeable}, otherwise its iterator is. */
+	static public <T> RemoteStream<T> of (Iterable<? extends T> values) {
+		if (values == null) throw new IllegalArgumentException("values cannot be null.");
+		Iterator<? extends T> iterator = values.iterator();
+		return new Source(iterator, values instanceof Closeable ? values : iterator);
+	}
+
+	public void remove () {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Stops receiving values. Values that have not been received are discarded. */
+	public abstract void close ();
+
+	/** The stream returned by the remote method's implementation. */
+	static class Source<T> extends RemoteStream<T> {
+		final Iterator<? extends T> values;
+		/** Closed with the stream if it is Closeable. */
+		private final Object resource;
+
+		Source (Iterator<? extends T> values, Object resource) {
+			this.values = values;
+			this.resource = resource;
+		}
+
+		public boolean hasNext () {
+			return values.hasNext();
+		}
+
+		public T next () {
+			return values.next();
+		}
+
+		public void close () {
+			if (!(resource instanceof Closeable)) return;
+			try {
+				((Closeable)resource).close();
+			} catch (IOException ex) {
+				if (WARN) warn("kryonet", "Error closing RMI stream.", ex);
+			}
+		}
+	}
+}
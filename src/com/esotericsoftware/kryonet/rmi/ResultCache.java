@@ -0,0 +1,102 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The cached results of a {@link Cacheable} method for one proxy, evicted least recently used first. */
+class ResultCache {
+	/** Returned by {@link #get(Object[])} when no result is cached, since null can be a result. */
+	static final Object miss = new Object();
+
+	final String methodName;
+	private final long ttl;
+	private final LinkedHashMap<Key, Entry> entries;
+	/** Incremented when the cache is cleared, so a response to an invocation sent before the clear is not cached. */
+	private int generation;
+
+	ResultCache (String methodName, Cacheable cacheable) {
+		this.methodName = methodName;
+		ttl = cacheable.ttl();
+		final int maxSize = Math.max(1, cacheable.maxSize());
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry (Map.Entry<Key, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/** Returns the cached result for the arguments, or {@link #miss}. */
+	public synchronized Object get (Object[] args) {
+		Key key = new Key(args);
+		Entry entry = entries.get(key);
+		if (entry == null) return miss;
+		if (ttl > 0 && System.currentTimeMillis() > entry.expires) {
+			entries.remove(key);
+			return miss;
+		}
+		return entry.result;
+	}
+
+	/** Returns the value to pass to {@link #put(Object[], Object, int)} for an invocation about to be sent. */
+	public synchronized int generation () {
+		return generation;
+	}
+
+	/** Caches the result unless the cache was cleared since the invocation was sent. */
+	public synchronized void put (Object[] args, Object result, int generation) {
+		if (generation != this.generation) return;
+		Entry entry = new Entry();
+		entry.result = result;
+		entry.expires = System.currentTimeMillis() + ttl;
+		entries.put(new Key(args == null ? null : args.clone()), entry);
+	}
+
+	public synchronized void clear () {
+		entries.clear();
+		generation++;
+	}
+
+	static private class Entry {
+		Object result;
+		long expires;
+	}
+
+	static private class Key {
+		final Object[] args;
+		final int hashCode;
+
+		Key (Object[] args) {
+			this.args = args;
+			hashCode = Arrays.deepHashCode(args);
+		}
+
+		public int hashCode () {
+			return hashCode;
+		}
+
+		public boolean equals (Object object) {
+			return object instanceof Key && Arrays.deepEquals(args, ((Key)object).args);
+		}
+	}
+}
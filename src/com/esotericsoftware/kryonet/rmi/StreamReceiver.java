@@ -0,0 +1,130 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetException;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.StreamChunk;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.StreamCredit;
+
+/** The {@link RemoteStream} returned by a proxy. Buffers at most a window of chunks and grants the remote end more credit as
+ * chunks are consumed. */
+class StreamReceiver extends RemoteStream {
+	private final Connection connection;
+	private final PendingCalls pendingCalls;
+	final int streamID;
+	private final int window, timeoutMillis;
+	private final ArrayDeque<Object[]> chunks = new ArrayDeque();
+	private int index, consumed;
+	private boolean done, failed, closed;
+
+	StreamReceiver (Connection connection, PendingCalls pendingCalls, int streamID, int window, int timeoutMillis) {
+		this.connection = connection;
+		this.pendingCalls = pendingCalls;
+		this.streamID = streamID;
+		this.window = window;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/** Grants the remote end credit for a full window of chunks. */
+	void open () {
+		sendCredit(window);
+	}
+
+	synchronized void received (StreamChunk chunk) {
+		if (closed) return;
+		if (chunk.elements.length > 0) chunks.add(chunk.elements);
+		if (chunk.last) {
+			done = true;
+			failed = chunk.failed;
+			pendingCalls.removeStream(streamID);
+		}
+		notifyAll();
+	}
+
+	/** Called when the connection is closed before the last chunk was received. */
+	synchronized void disconnected () {
+		if (done) return;
+		done = true;
+		failed = true;
+		notifyAll();
+	}
+
+	public synchronized boolean hasNext () {
+		if (closed) return false;
+		if (!chunks.isEmpty()) return true;
+		if (connection.getEndPoint().getUpdateThread() == Thread.currentThread())
+			throw new IllegalStateException("Cannot wait for an RMI stream on the connection's update thread.");
+		long endTime = System.currentTimeMillis() + timeoutMillis;
+		while (chunks.isEmpty()) {
+			if (done) {
+				if (failed) throw new KryoNetException("RMI stream failed: " + streamID);
+				return false;
+			}
+			long remaining = endTime - System.currentTimeMillis();
+			if (remaining <= 0) throw new TimeoutException("RMI stream timed out: " + streamID);
+			try {
+				wait(remaining);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new KryoNetException(ex);
+			}
+		}
+		return true;
+	}
+
+	public synchronized Object next () {
+		if (!hasNext()) throw new NoSuchElementException();
+		Object[] chunk = chunks.peek();
+		Object value = chunk[index++];
+		if (index == chunk.length) {
+			chunks.poll();
+			index = 0;
+			// Grant more credit once half the window has been consumed, so the next chunks arrive before they are needed.
+			if (++consumed >= Math.max(1, window / 2) && !done) {
+				sendCredit(consumed);
+				consumed = 0;
+			}
+		}
+		return value;
+	}
+
+	public synchronized void close () {
+		if (closed) return;
+		closed = true;
+		chunks.clear();
+		if (!done) {
+			done = true;
+			pendingCalls.removeStream(streamID);
+			sendCredit(0);
+		}
+	}
+
+	private void sendCredit (int chunks) {
+		StreamCredit credit = new StreamCredit();
+		credit.streamID = streamID;
+		credit.credit = chunks;
+		connection.sendTCP(credit);
+	}
+}
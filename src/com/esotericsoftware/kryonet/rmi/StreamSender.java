@@ -0,0 +1,111 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledFuture;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.StreamChunk;
+
+/** Sends the values of a {@link RemoteStream} returned by a remote method, one chunk for each credit granted by the caller. The
+ * stream is closed when the sender is done for any reason. */
+class StreamSender {
+	final Connection connection;
+	final int streamID;
+	private final RemoteStream values;
+	private final int chunkSize;
+	private int credit;
+	private boolean credited, done;
+	/** Forgets the stream if no credit is granted in time. */
+	ScheduledFuture expiry;
+
+	StreamSender (Connection connection, int streamID, RemoteStream values, int chunkSize) {
+		this.connection = connection;
+		this.streamID = streamID;
+		this.values = values;
+		this.chunkSize = chunkSize;
+	}
+
+	/** Adds credit for more chunks and sends as many chunks as the credit allows.
+	 * @return True if the stream is done, either because the last chunk was sent or the caller closed the stream. */
+	public synchronized boolean credit (int chunks) {
+		if (done) return true;
+		if (!credited) {
+			credited = true;
+			if (expiry != null) expiry.cancel(false);
+		}
+		if (chunks <= 0) {
+			// The caller closed the stream.
+			finish();
+			return true;
+		}
+		credit += chunks;
+		while (credit > 0) {
+			StreamChunk chunk = new StreamChunk();
+			chunk.streamID = streamID;
+			ArrayList elements = new ArrayList(chunkSize);
+			try {
+				while (elements.size() < chunkSize && values.hasNext())
+					elements.add(values.next());
+				chunk.last = !values.hasNext();
+			} catch (RuntimeException ex) {
+				if (WARN) warn("kryonet", "Error producing values for RMI stream: " + streamID, ex);
+				chunk.last = true;
+				chunk.failed = true;
+			}
+			chunk.elements = elements.toArray();
+			connection.sendTCP(chunk);
+			credit--;
+			if (chunk.last) {
+				finish();
+				break;
+			}
+		}
+		if (TRACE) trace("kryonet", connection + " sent RMI stream chunks: " + streamID + ", done: " + done);
+		return done;
+	}
+
+	/** Stops the stream if it has never been granted credit.
+	 * @return True if the stream was stopped. */
+	public synchronized boolean expire () {
+		if (credited || done) return false;
+		finish();
+		return true;
+	}
+
+	/** Stops the stream because the connection was removed. */
+	public synchronized void close () {
+		if (expiry != null) expiry.cancel(false);
+		if (!done) finish();
+	}
+
+	private void finish () {
+		done = true;
+		try {
+			values.close();
+		} catch (RuntimeException ex) {
+			if (WARN) warn("kryonet", "Error closing RMI stream: " + streamID, ex);
+		}
+	}
+}
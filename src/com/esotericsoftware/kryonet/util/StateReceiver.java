@@ -0,0 +1,123 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.util;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+
+import com.esotericsoftware.kryo.util.IntMap;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.util.StateReplicator.StateAck;
+import com.esotericsoftware.kryonet.util.StateReplicator.StateSerializer;
+import com.esotericsoftware.kryonet.util.StateReplicator.StateUpdate;
+
+/** Receives states sent by a {@link StateReplicator}, rebuilding the full state from the changed fields and the baseline state,
+ * and acknowledges each state so the replicator can send later states relative to it. States older than the newest state
+ * received for an ID are discarded.
+ * <p>
+ * The receiver must be added as a listener to the connection.
+ * @see StateReplicator */
+abstract public class StateReceiver extends Listener {
+	private final HashMap<Connection, IntMap<Channel>> connectionToChannels = new HashMap();
+	private boolean udp = true;
+
+	/** If true, acknowledgements are sent using UDP (the default). Otherwise TCP is used. This should match the setting used by the
+	 * {@link StateReplicator#setUDP(boolean) replicator}. */
+	public void setUDP (boolean udp) {
+		this.udp = udp;
+	}
+
+	/** Called when the state for an object is received. The state must not be modified, since it may be the baseline for later
+	 * states. This is called on the connection's update thread. */
+	abstract protected void received (Connection connection, int id, Object state);
+
+	public void received (Connection connection, Object object) {
+		if (!(object instanceof StateUpdate)) return;
+		StateUpdate update = (StateUpdate)object;
+
+		Channel channel;
+		synchronized (connectionToChannels) {
+			IntMap<Channel> channels = connectionToChannels.get(connection);
+			if (channels == null) {
+				channels = new IntMap();
+				connectionToChannels.put(connection, channels);
+			}
+			channel = channels.get(update.id);
+			if (channel == null) {
+				channel = new Channel();
+				channels.put(update.id, channel);
+			}
+		}
+
+		int sequence = update.sequence;
+		if (sequence <= channel.lastSequence) {
+			if (TRACE) trace("kryonet", connection + " discarded stale state " + update.id + ": " + sequence);
+			return;
+		}
+
+		Object state = update.state;
+		if (update.changed != null) {
+			int index = update.baselineSequence % StateReplicator.window;
+			Object baseline = channel.received[index];
+			if (channel.receivedSequences[index] != update.baselineSequence || baseline == null
+				|| baseline.getClass() != state.getClass()) {
+				if (DEBUG) debug("kryonet", connection + " discarded state " + update.id + " with unknown baseline: " + sequence);
+				return;
+			}
+			StateSerializer serializer = StateReplicator.getSerializer(connection.getEndPoint().getKryo());
+			Field[] fields = serializer.getFields(state.getClass());
+			byte[] changed = update.changed;
+			for (int i = 0, n = fields.length; i < n; i++)
+				if ((changed[i >> 3] & (1 << (i & 7))) == 0) StateReplicator.copyField(fields[i], baseline, state);
+		}
+
+		int index = sequence % StateReplicator.window;
+		channel.received[index] = state;
+		channel.receivedSequences[index] = sequence;
+		channel.lastSequence = sequence;
+
+		StateAck ack = new StateAck();
+		ack.id = update.id;
+		ack.sequence = sequence;
+		if (udp)
+			connection.sendUDP(ack);
+		else
+			connection.sendTCP(ack);
+
+		received(connection, update.id, state);
+	}
+
+	public void disconnected (Connection connection) {
+		synchronized (connectionToChannels) {
+			connectionToChannels.remove(connection);
+		}
+	}
+
+	/** The states received for one object from one connection. */
+	static private class Channel {
+		final Object[] received = new Object[StateReplicator.window];
+		final int[] receivedSequences = new int[StateReplicator.window];
+		int lastSequence;
+	}
+}
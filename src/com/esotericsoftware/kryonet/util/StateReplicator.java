@@ -0,0 +1,338 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.util;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer.CachedField;
+import com.esotericsoftware.kryo.util.IntMap;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.FrameworkMessage;
+import com.esotericsoftware.kryonet.KryoNetException;
+import com.esotericsoftware.kryonet.KryoSerialization;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Serialization;
+
+/** Sends the state of objects to connections, transmitting only the fields that changed since the last state the remote end
+ * acknowledged. The remote end uses a {@link StateReceiver} to rebuild the full state and acknowledge it. If no state has been
+ * acknowledged, for example after a new connection or when acknowledgements are lost, the full state is sent.
+ * <p>
+ * Each object is identified by an ID chosen by the application, eg a character ID. The fields of a state object must be
+ * primitives or immutable objects, since states are copied field by field. The state classes must be registered on both ends.
+ * <p>
+ * The replicator must be added as a listener to the {@link com.esotericsoftware.kryonet.Server} or to each connection so it
+ * receives acknowledgements. StateReplicator requires {@link KryoSerialization} and both ends must call
+ * {@link #registerClasses(Kryo)}. */
+public class StateReplicator extends Listener {
+	/** The number of unacknowledged states kept for each object. A state older than this is never used as a baseline. */
+	static final int window = 32;
+
+	private final HashMap<Connection, IntMap<Channel>> connectionToChannels = new HashMap();
+	private boolean udp = true;
+
+	/** If true, states are sent using UDP (the default). Otherwise TCP is used. */
+	public void setUDP (boolean udp) {
+		this.udp = udp;
+	}
+
+	/** Sends the state of the object with the specified ID to the connection. The state is copied, so the object can be modified
+	 * after this method returns. The state for an ID should not be sent for the same connection from multiple threads at once.
+	 * @return The number of bytes sent. */
+	public int send (Connection connection, int id, Object state) {
+		if (connection == null) throw new IllegalArgumentException("connection cannot be null.");
+		if (state == null) throw new IllegalArgumentException("state cannot be null.");
+		Kryo kryo = connection.getEndPoint().getKryo();
+		if (kryo == null) throw new IllegalStateException("StateReplicator requires KryoSerialization.");
+		Serialization serialization = connection.getEndPoint().getSerialization();
+		StateSerializer serializer = getSerializer(kryo);
+		Field[] fields = serializer.getFields(state.getClass());
+		if (fields == null) {
+			// Kryo is only used while holding the serialization's lock.
+			synchronized (serialization) {
+				serializer.getCachedFields(kryo, state.getClass());
+			}
+			fields = serializer.getFields(state.getClass());
+		}
+
+		Channel channel;
+		synchronized (connectionToChannels) {
+			IntMap<Channel> channels = connectionToChannels.get(connection);
+			if (channels == null) {
+				channels = new IntMap();
+				connectionToChannels.put(connection, channels);
+			}
+			channel = channels.get(id);
+			if (channel == null) {
+				channel = new Channel();
+				channels.put(id, channel);
+			}
+		}
+
+		synchronized (channel) {
+			int sequence = channel.nextSequence++;
+			int index = sequence % window;
+			Object snapshot = channel.sent[index];
+			if (snapshot == null || snapshot.getClass() != state.getClass()) {
+				synchronized (serialization) {
+					snapshot = kryo.newInstance(state.getClass());
+				}
+			}
+			for (int i = 0, n = fields.length; i < n; i++)
+				copyField(fields[i], state, snapshot);
+			channel.sent[index] = snapshot;
+			channel.sentSequences[index] = sequence;
+
+			StateUpdate update = new StateUpdate();
+			update.id = id;
+			update.sequence = sequence;
+			update.state = snapshot;
+			Object baseline = channel.baseline;
+			if (baseline != null && baseline.getClass() == state.getClass() && sequence - channel.baselineSequence < window) {
+				update.baseline = baseline;
+				update.baselineSequence = channel.baselineSequence;
+			}
+			return udp ? connection.sendUDP(update) : connection.sendTCP(update);
+		}
+	}
+
+	/** Forgets the states sent for the object with the specified ID, so the next state sent is the full state. Sequence numbers
+	 * keep increasing, so the receiver does not discard the states sent after this as stale. */
+	public void remove (Connection connection, int id) {
+		synchronized (connectionToChannels) {
+			IntMap<Channel> channels = connectionToChannels.get(connection);
+			if (channels == null) return;
+			Channel channel = channels.get(id);
+			if (channel == null) return;
+			Channel reset = new Channel();
+			synchronized (channel) {
+				reset.nextSequence = channel.nextSequence;
+			}
+			channels.put(id, reset);
+		}
+	}
+
+	public void received (Connection connection, Object object) {
+		if (!(object instanceof StateAck)) return;
+		StateAck ack = (StateAck)object;
+		Channel channel;
+		synchronized (connectionToChannels) {
+			IntMap<Channel> channels = connectionToChannels.get(connection);
+			if (channels == null) return;
+			channel = channels.get(ack.id);
+		}
+		if (channel == null) return;
+		synchronized (channel) {
+			int sequence = ack.sequence;
+			if (sequence <= channel.baselineSequence) return;
+			int index = sequence % window;
+			if (channel.sentSequences[index] != sequence) return; // Too old.
+			// Swap the acknowledged state with the old baseline, which is reused for a later state.
+			Object baseline = channel.baseline;
+			channel.baseline = channel.sent[index];
+			channel.baselineSequence = sequence;
+			channel.sent[index] = baseline;
+			channel.sentSequences[index] = 0;
+		}
+		if (TRACE) trace("kryonet", connection + " acknowledged state " + ack.id + ": " + ack.sequence);
+	}
+
+	public void disconnected (Connection connection) {
+		synchronized (connectionToChannels) {
+			connectionToChannels.remove(connection);
+		}
+	}
+
+	static StateSerializer getSerializer (Kryo kryo) {
+		Serializer serializer = kryo.getRegistration(StateUpdate.class).getSerializer();
+		if (!(serializer instanceof StateSerializer))
+			throw new KryoNetException("StateReplicator#registerClasses must be called to use StateReplicator.");
+		return (StateSerializer)serializer;
+	}
+
+	/** Registers the classes needed to use StateReplicator and StateReceiver. This should be called before any connections are
+	 * opened. */
+	static public void registerClasses (Kryo kryo) {
+		kryo.register(StateUpdate.class, new StateSerializer());
+		kryo.register(StateAck.class);
+	}
+
+	static void copyField (Field field, Object from, Object to) {
+		try {
+			Class type = field.getType();
+			if (!type.isPrimitive())
+				field.set(to, field.get(from));
+			else if (type == int.class)
+				field.setInt(to, field.getInt(from));
+			else if (type == float.class)
+				field.setFloat(to, field.getFloat(from));
+			else if (type == boolean.class)
+				field.setBoolean(to, field.getBoolean(from));
+			else if (type == long.class)
+				field.setLong(to, field.getLong(from));
+			else if (type == double.class)
+				field.setDouble(to, field.getDouble(from));
+			else if (type == short.class)
+				field.setShort(to, field.getShort(from));
+			else if (type == byte.class)
+				field.setByte(to, field.getByte(from));
+			else if (type == char.class) //
+				field.setChar(to, field.getChar(from));
+		} catch (IllegalAccessException ex) {
+			throw new KryoNetException("Unable to copy field: " + field, ex);
+		}
+	}
+
+	static boolean fieldEquals (Field field, Object a, Object b) {
+		try {
+			Class type = field.getType();
+			if (!type.isPrimitive()) {
+				Object valueA = field.get(a), valueB = field.get(b);
+				return valueA == valueB || (valueA != null && valueA.equals(valueB));
+			}
+			if (type == int.class) return field.getInt(a) == field.getInt(b);
+			if (type == float.class) return Float.floatToIntBits(field.getFloat(a)) == Float.floatToIntBits(field.getFloat(b));
+			if (type == boolean.class) return field.getBoolean(a) == field.getBoolean(b);
+			if (type == long.class) return field.getLong(a) == field.getLong(b);
+			if (type == double.class)
+				return Double.doubleToLongBits(field.getDouble(a)) == Double.doubleToLongBits(field.getDouble(b));
+			if (type == short.class) return field.getShort(a) == field.getShort(b);
+			if (type == byte.class) return field.getByte(a) == field.getByte(b);
+			return field.getChar(a) == field.getChar(b);
+		} catch (IllegalAccessException ex) {
+			throw new KryoNetException("Unable to compare field: " + field, ex);
+		}
+	}
+
+	/** The states sent for one object to one connection. */
+	static private class Channel {
+		final Object[] sent = new Object[window];
+		final int[] sentSequences = new int[window];
+		Object baseline;
+		int baselineSequence;
+		int nextSequence = 1;
+	}
+
+	/** Internal message containing the fields of a state that changed since the baseline state. */
+	static public class StateUpdate implements FrameworkMessage {
+		public int id;
+		public int sequence;
+		/** The sequence of the state the changes are relative to, or 0 if all the fields are present. */
+		public int baselineSequence;
+		/** When sending, the full state. When receiving, only the changed fields are set. */
+		public Object state;
+		/** When sending, the state the changes are relative to, or null to send all the fields. */
+		Object baseline;
+		/** When receiving, one bit per field which is set if the field is present, or null if all the fields are present. */
+		byte[] changed;
+	}
+
+	/** Internal message to acknowledge a state was received. */
+	static public class StateAck implements FrameworkMessage {
+		public int id;
+		public int sequence;
+	}
+
+	/** Writes only the fields that differ from the baseline, preceded by a bit mask of the fields written. */
+	static class StateSerializer extends Serializer<StateUpdate> {
+		private final HashMap<Class, CachedField[]> typeToCachedFields = new HashMap();
+		private final HashMap<Class, Field[]> typeToFields = new HashMap();
+		private byte[] mask = new byte[8];
+
+		synchronized CachedField[] getCachedFields (Kryo kryo, Class type) {
+			CachedField[] cachedFields = typeToCachedFields.get(type);
+			if (cachedFields == null) {
+				cachedFields = new FieldSerializer(kryo, type).getFields();
+				Field[] fields = new Field[cachedFields.length];
+				for (int i = 0, n = fields.length; i < n; i++) {
+					fields[i] = cachedFields[i].getField();
+					fields[i].setAccessible(true);
+				}
+				typeToCachedFields.put(type, cachedFields);
+				typeToFields.put(type, fields);
+			}
+			return cachedFields;
+		}
+
+		/** Returns the fields of the type in the order they are serialized, or null if {@link #getCachedFields(Kryo, Class)} has not
+		 * been called for the type. */
+		synchronized Field[] getFields (Class type) {
+			return typeToFields.get(type);
+		}
+
+		public void write (Kryo kryo, Output output, StateUpdate update) {
+			Object state = update.state, baseline = update.baseline;
+			output.writeInt(update.id, true);
+			output.writeInt(update.sequence, true);
+			output.writeInt(baseline == null ? 0 : update.sequence - update.baselineSequence, true);
+			Class type = state.getClass();
+			kryo.writeClass(output, type);
+			CachedField[] cachedFields = getCachedFields(kryo, type);
+			int n = cachedFields.length;
+			if (baseline == null) {
+				for (int i = 0; i < n; i++)
+					cachedFields[i].write(output, state);
+				return;
+			}
+			Field[] fields = getFields(type);
+			int maskLength = (n + 7) >> 3;
+			if (mask.length < maskLength) mask = new byte[maskLength];
+			byte[] mask = this.mask;
+			for (int i = 0; i < maskLength; i++)
+				mask[i] = 0;
+			for (int i = 0; i < n; i++)
+				if (!fieldEquals(fields[i], state, baseline)) mask[i >> 3] |= 1 << (i & 7);
+			output.writeBytes(mask, 0, maskLength);
+			for (int i = 0; i < n; i++)
+				if ((mask[i >> 3] & (1 << (i & 7))) != 0) cachedFields[i].write(output, state);
+		}
+
+		public StateUpdate read (Kryo kryo, Input input, Class<StateUpdate> type) {
+			StateUpdate update = new StateUpdate();
+			update.id = input.readInt(true);
+			update.sequence = input.readInt(true);
+			int distance = input.readInt(true);
+			if (distance != 0) update.baselineSequence = update.sequence - distance;
+			Class stateType = kryo.readClass(input).getType();
+			Object state = kryo.newInstance(stateType);
+			update.state = state;
+			CachedField[] cachedFields = getCachedFields(kryo, stateType);
+			int n = cachedFields.length;
+			if (distance == 0) {
+				for (int i = 0; i < n; i++)
+					cachedFields[i].read(input, state);
+				return update;
+			}
+			byte[] changed = input.readBytes((n + 7) >> 3);
+			update.changed = changed;
+			for (int i = 0; i < n; i++)
+				if ((changed[i >> 3] & (1 << (i & 7))) != 0) cachedFields[i].read(input, state);
+			return update;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryo.Kryo;
+
+public class DictionaryTest extends KryoNetTestCase {
+	public void testDictionary () throws IOException {
+		final Server server = new Server();
+		register(server);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		final AtomicInteger received = new AtomicInteger();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof ChatMessage)) return;
+				ChatMessage message = (ChatMessage)object;
+				assertEquals(newMessage(), message);
+				if (received.incrementAndGet() == 4) stopEndPoints();
+			}
+		});
+
+		// ----
+
+		final Client client = new Client();
+		register(client);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+
+		int first = client.sendTCP(newMessage());
+		int second = client.sendTCP(newMessage());
+		assertTrue("Dictionary was not used: " + first + " <= " + second, second < first);
+		assertEquals(second, client.sendTCP(newMessage()));
+		// UDP datagrams must never use the dictionary.
+		client.sendUDP(newMessage());
+
+		waitForThreads(5000);
+		assertEquals(4, received.get());
+	}
+
+	static ChatMessage newMessage () {
+		ChatMessage message = new ChatMessage();
+		message.channel = "general";
+		message.sender = "Some Player Name";
+		message.text = "Hello";
+		message.color = new Color(255, 128, 0);
+		return message;
+	}
+
+	static void register (EndPoint endPoint) {
+		KryoSerialization serialization = (KryoSerialization)endPoint.getSerialization();
+		Kryo kryo = serialization.getKryo();
+		kryo.register(ChatMessage.class);
+		kryo.register(Color.class);
+		serialization.setDictionarySize(16);
+		serialization.addDictionaryType(Color.class);
+	}
+
+	static public class ChatMessage {
+		public String channel, sender, text;
+		public Color color;
+
+		public boolean equals (Object obj) {
+			if (!(obj instanceof ChatMessage)) return false;
+			ChatMessage other = (ChatMessage)obj;
+			return channel.equals(other.channel) && sender.equals(other.sender) && text.equals(other.text)
+				&& color.equals(other.color);
+		}
+	}
+
+	static public class Color {
+		public int r, g, b;
+
+		public Color () {
+		}
+
+		public Color (int r, int g, int b) {
+			this.r = r;
+			this.g = g;
+			this.b = b;
+		}
+
+		public int hashCode () {
+			return (r << 16) | (g << 8) | b;
+		}
+
+		public boolean equals (Object obj) {
+			if (!(obj instanceof Color)) return false;
+			Color other = (Color)obj;
+			return r == other.r && g == other.g && b == other.b;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PreparedMessageTest extends KryoNetTestCase {
+	public void testPreparedMessage () throws IOException {
+		final Server server = new Server();
+		server.getKryo().register(Lobby.class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		// ----
+
+		final AtomicInteger received = new AtomicInteger(), updated = new AtomicInteger();
+		Listener listener = new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof Lobby)) return;
+				Lobby lobby = (Lobby)object;
+				assertEquals("Lobby", lobby.name);
+				if (lobby.players == 8) updated.incrementAndGet();
+				if (received.incrementAndGet() == 6) stopEndPoints();
+			}
+		};
+		Client client1 = new Client();
+		client1.getKryo().register(Lobby.class);
+		client1.addListener(listener);
+		startEndPoint(client1);
+		client1.connect(5000, host, tcpPort, udpPort);
+
+		Client client2 = new Client();
+		client2.getKryo().register(Lobby.class);
+		client2.addListener(listener);
+		startEndPoint(client2);
+		client2.connect(5000, host, tcpPort, udpPort);
+
+		Lobby lobby = new Lobby();
+		lobby.name = "Lobby";
+		lobby.players = 4;
+		PreparedMessage message = new PreparedMessage(lobby);
+		assertFalse(message.isPrepared(server.getSerialization()));
+		server.sendToAllTCP(message);
+		assertTrue(message.isPrepared(server.getSerialization()));
+		server.sendToAllUDP(message);
+
+		lobby.players = 8;
+		message.invalidate();
+		assertFalse(message.isPrepared(server.getSerialization()));
+		server.sendToAllTCP(message);
+
+		waitForThreads(5000);
+		assertEquals(6, received.get());
+		assertEquals(2, updated.get());
+	}
+
+	public void testCache () {
+		PreparedMessageCache cache = new PreparedMessageCache(2);
+		Object a = new Object(), b = new Object(), c = new Object();
+		// Objects are only prepared the second time they are seen.
+		assertNull(cache.get(a));
+		PreparedMessage messageA = cache.get(a);
+		assertNotNull(messageA);
+		assertSame(messageA, cache.get(a));
+		assertNull(cache.get(b));
+		// Adding c evicts the least recently used, a.
+		cache.get(b);
+		assertNull(cache.get(c));
+		assertEquals(2, cache.size());
+		assertNull(cache.get(a));
+		cache.remove(a);
+		assertEquals(1, cache.size());
+	}
+
+	static public class Lobby {
+		public String name;
+		public int players;
+	}
+}
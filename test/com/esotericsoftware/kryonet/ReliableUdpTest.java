@@ -0,0 +1,145 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class ReliableUdpTest extends KryoNetTestCase {
+	public void testReliableUDP () throws IOException {
+		final Server server = new Server();
+		server.getKryo().register(Message.class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		final ArrayList<Integer> received = new ArrayList();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof Message)) return;
+				received.add(((Message)object).value);
+				if (received.size() == 100) stopEndPoints();
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		client.getKryo().register(Message.class);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		for (int i = 0; i < 100; i++)
+			client.sendReliableUDP(new Message(i));
+
+		waitForThreads(5000);
+		assertEquals(100, received.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals(i, (int)received.get(i));
+	}
+
+	/** Connects two connections with a link that loses and reorders datagrams. */
+	public void testLoss () {
+		KryoSerialization serialization = new KryoSerialization();
+		serialization.getKryo().register(Message.class);
+		final Random random = new Random(1234);
+		final ArrayList<Object> inFlight = new ArrayList();
+		final LossyConnection a = new LossyConnection(serialization, random, inFlight);
+		final LossyConnection b = new LossyConnection(serialization, random, inFlight);
+		a.remote = b;
+		b.remote = a;
+
+		final ArrayList<Integer> received = new ArrayList();
+		b.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof Message) received.add(((Message)object).value);
+			}
+		});
+
+		for (int i = 0; i < 200; i++)
+			a.sendReliableUDP(new Message(i));
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < 1000 && received.size() < 200; i++) {
+			// Deliver in a random order.
+			while (!inFlight.isEmpty()) {
+				Object[] datagram = (Object[])inFlight.remove(random.nextInt(inFlight.size()));
+				((Connection)datagram[0]).notifyReceived(datagram[1]);
+			}
+			time += 3000;
+			a.updateUdp(time);
+		}
+		assertEquals(200, received.size());
+		for (int i = 0; i < 200; i++)
+			assertEquals(i, (int)received.get(i));
+	}
+
+	/** Sends to a remote end that never acknowledges, so objects beyond the window are queued until the limit is reached. */
+	public void testQueueLimit () {
+		KryoSerialization serialization = new KryoSerialization();
+		serialization.getKryo().register(Message.class);
+		final Random random = new Random(1234);
+		final ArrayList<Object> inFlight = new ArrayList();
+		LossyConnection a = new LossyConnection(serialization, random, inFlight);
+		LossyConnection b = new LossyConnection(serialization, random, inFlight);
+		a.remote = b;
+		b.remote = a;
+
+		for (int i = 0; i < ReliableUdp.windowSize + ReliableUdp.maxQueued; i++)
+			assertTrue(a.sendReliableUDP(new Message(i)) > 0);
+		assertTrue(a.isConnected());
+		// Exceeding the limit closes the connection.
+		assertEquals(0, a.sendReliableUDP(new Message(-1)));
+		assertFalse(a.isConnected());
+	}
+
+	/** A connection whose datagrams are lost or put in a list instead of being sent. Everything else is the real implementation. */
+	static class LossyConnection extends Connection {
+		LossyConnection remote;
+		private final Random random;
+		private final ArrayList<Object> inFlight;
+
+		LossyConnection (Serialization serialization, Random random, ArrayList<Object> inFlight) {
+			this.random = random;
+			this.inFlight = inFlight;
+			initialize(serialization, 1024, 1024);
+			udp = new UdpConnection(serialization, 1024);
+			udpRemoteAddress = new InetSocketAddress(0);
+			isConnected = true;
+		}
+
+		public int sendUDP (Object object) {
+			if (random.nextInt(4) == 0) return 0;
+			// Send a copy, as a real datagram would.
+			inFlight.add(new Object[] {remote, remote.udp.deserialize(remote, udp.serialize(this, object))});
+			return 1;
+		}
+	}
+
+	static public class Message {
+		public int value;
+
+		public Message () {
+		}
+
+		public Message (int value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.SequencedUDP;
+
+public class SequencedUdpTest extends KryoNetTestCase {
+	public void testSequencedUDP () throws IOException {
+		final Server server = new Server();
+		server.getKryo().register(Position.class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		final ArrayList<Integer> received = new ArrayList();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof Position)) return;
+				received.add(((Position)object).x);
+				if (((Position)object).x == 9) stopEndPoints();
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		client.getKryo().register(Position.class);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		for (int i = 0; i < 10; i++)
+			client.sendSequencedUDP(new Position(i));
+
+		waitForThreads(5000);
+		for (int i = 1, n = received.size(); i < n; i++)
+			assertTrue(received.get(i) > received.get(i - 1));
+	}
+
+	public void testStale () {
+		final ArrayList<Integer> received = new ArrayList();
+		Connection connection = new Connection();
+		connection.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof Position) received.add(((Position)object).x);
+			}
+		});
+		connection.notifyReceived(sequenced(0, 0, 0));
+		connection.notifyReceived(sequenced(0, 2, 2));
+		connection.notifyReceived(sequenced(0, 1, 1)); // Stale.
+		connection.notifyReceived(sequenced(0, 2, 2)); // Duplicate.
+		connection.notifyReceived(sequenced(1, 0, 10)); // Channels are independent.
+		connection.notifyReceived(sequenced(0, 3, 3));
+		assertEquals("[0, 2, 10, 3]", received.toString());
+	}
+
+	static private SequencedUDP sequenced (int channel, int sequence, int x) {
+		SequencedUDP message = new SequencedUDP();
+		message.channel = channel;
+		message.sequence = sequence;
+		message.object = new Position(x);
+		return message;
+	}
+
+	static public class Position {
+		public int x;
+
+		public Position () {
+		}
+
+		public Position (int x) {
+			this.x = x;
+		}
+	}
+}
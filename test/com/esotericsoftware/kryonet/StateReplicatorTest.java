@@ -0,0 +1,201 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.util.StateReceiver;
+import com.esotericsoftware.kryonet.util.StateReplicator;
+
+public class StateReplicatorTest extends KryoNetTestCase {
+	/** The number of states the replicator keeps for each object. */
+	static private final int window = 32;
+
+	private Server server;
+	private Client client;
+	private StateReplicator replicator;
+	private final ArrayList<Character> received = new ArrayList();
+	private volatile boolean dropAcks;
+
+	public void testTCP () throws IOException {
+		start(false);
+		replicate();
+	}
+
+	public void testUDP () throws IOException {
+		start(true);
+		replicate();
+	}
+
+	public void testLostAcks () throws IOException {
+		start(true);
+		Connection connection = server.getConnections()[0];
+		Character character = newCharacter();
+		int full = replicator.send(connection, 7, character);
+		waitForStates(1);
+
+		// Without acknowledgements the baseline gets too old and the full state is sent again.
+		dropAcks = true;
+		for (int i = 1; i <= window; i++) {
+			character.x = 10 + i;
+			replicator.send(connection, 7, character);
+			waitForStates(1 + i);
+		}
+		dropAcks = false;
+		character.x = 50;
+		assertEquals(full, replicator.send(connection, 7, character));
+		waitForStates(window + 2);
+
+		stopEndPoints();
+		waitForThreads();
+		Character last = received.get(received.size() - 1);
+		assertEquals(50, last.x);
+		assertEquals(20, last.y);
+		assertEquals("Some character with a long name", last.name);
+	}
+
+	public void testRemove () throws IOException {
+		start(true);
+		Connection connection = server.getConnections()[0];
+		Character character = newCharacter();
+		int full = replicator.send(connection, 7, character);
+		waitForStates(1);
+		character.x = 11;
+		replicator.send(connection, 7, character);
+		waitForStates(2);
+
+		// After a remove the full state is sent, and the receiver must not discard it as stale.
+		replicator.remove(connection, 7);
+		character.x = 12;
+		assertEquals(full, replicator.send(connection, 7, character));
+		waitForStates(3);
+		character.y = 21;
+		assertTrue(replicator.send(connection, 7, character) < full);
+		waitForStates(4);
+
+		stopEndPoints();
+		waitForThreads();
+		assertEquals(12, received.get(2).x);
+		assertEquals(12, received.get(3).x);
+		assertEquals(21, received.get(3).y);
+	}
+
+	private void start (boolean udp) throws IOException {
+		server = new Server();
+		register(server.getKryo());
+		replicator = new StateReplicator() {
+			public void received (Connection connection, Object object) {
+				if (!dropAcks) super.received(connection, object);
+			}
+		};
+		replicator.setUDP(udp);
+		server.addListener(replicator);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		// ----
+
+		client = new Client();
+		register(client.getKryo());
+		StateReceiver receiver = new StateReceiver() {
+			protected void received (Connection connection, int id, Object state) {
+				assertEquals(7, id);
+				synchronized (received) {
+					received.add((Character)state);
+					received.notifyAll();
+				}
+			}
+		};
+		receiver.setUDP(udp);
+		client.addListener(receiver);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+	}
+
+	private void replicate () {
+		Connection connection = server.getConnections()[0];
+		Character character = newCharacter();
+		int full = replicator.send(connection, 7, character);
+		waitForStates(1);
+
+		// The first state was acknowledged, so only the changed field is sent.
+		character.x = 11;
+		int delta = replicator.send(connection, 7, character);
+		assertTrue("Delta was not smaller: " + full + " <= " + delta, delta < full);
+		waitForStates(2);
+
+		character.y = 21;
+		character.health = 90f;
+		replicator.send(connection, 7, character);
+		waitForStates(3);
+
+		stopEndPoints();
+		waitForThreads();
+
+		Character last = received.get(2);
+		assertEquals("Some character with a long name", last.name);
+		assertEquals(11, last.x);
+		assertEquals(21, last.y);
+		assertEquals(90f, last.health);
+		assertEquals(10, received.get(0).x);
+		assertEquals(100f, received.get(1).health);
+	}
+
+	private Character newCharacter () {
+		Character character = new Character();
+		character.name = "Some character with a long name";
+		character.x = 10;
+		character.y = 20;
+		character.health = 100;
+		return character;
+	}
+
+	private void waitForStates (int count) {
+		synchronized (received) {
+			long end = System.currentTimeMillis() + 5000;
+			while (received.size() < count && System.currentTimeMillis() < end) {
+				try {
+					received.wait(100);
+				} catch (InterruptedException ignored) {
+				}
+			}
+			assertEquals(count, received.size());
+		}
+		// Give the acknowledgement time to arrive.
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	static void register (Kryo kryo) {
+		StateReplicator.registerClasses(kryo);
+		kryo.register(Character.class);
+	}
+
+	static public class Character {
+		public String name;
+		public int x, y;
+		public float health;
+	}
+}
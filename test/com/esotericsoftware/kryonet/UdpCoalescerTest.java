@@ -0,0 +1,140 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.BatchUDP;
+
+public class UdpCoalescerTest extends KryoNetTestCase {
+	public void testCoalescing () throws IOException {
+		final Server server = new Server();
+		server.getKryo().register(Update.class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		final AtomicInteger received = new AtomicInteger();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof Update && received.incrementAndGet() == 20) stopEndPoints();
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		client.getKryo().register(Update.class);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		client.setCoalesceUDP(true);
+		for (int i = 0; i < 20; i++)
+			client.sendUDP(new Update(i));
+		client.flushUDP();
+
+		waitForThreads(5000);
+		assertEquals(20, received.get());
+	}
+
+	public void testMtu () {
+		KryoSerialization serialization = new KryoSerialization();
+		serialization.getKryo().register(Update.class);
+		final ArrayList<Object> sent = new ArrayList();
+		Connection connection = new Connection() {
+			int sendUDPNow (Object object, byte[] bytes) {
+				sent.add(object);
+				return 1;
+			}
+		};
+		connection.initialize(serialization, 1024, 1024);
+		connection.udp = new UdpConnection(serialization, 1024);
+		connection.udpRemoteAddress = new java.net.InetSocketAddress(udpPort);
+		connection.setUdpMtu(100);
+		connection.setCoalesceUDP(true);
+
+		Update update = new Update(1);
+		update.text = "0123456789012345678901234567890123456789";
+		for (int i = 0; i < 5; i++)
+			connection.sendUDP(update);
+		connection.flushUDP();
+		// Two updates fit in each datagram.
+		assertEquals(3, sent.size());
+		assertEquals(2, ((BatchUDP)sent.get(0)).frames.length);
+		assertEquals(1, ((BatchUDP)sent.get(2)).frames.length);
+		for (Object batch : sent) {
+			int size = connection.udp.serialize(connection, batch).length;
+			assertTrue("Datagram is larger than the MTU: " + size, size <= 100);
+		}
+
+		// Too large to share a datagram.
+		sent.clear();
+		update.text += update.text + update.text;
+		connection.sendUDP(update);
+		assertTrue(sent.get(0) instanceof Update);
+	}
+
+	public void testRequiresKryo () throws IOException {
+		Connection connection = new Connection() {
+		};
+		connection.initialize(new JsonSerialization(), 1024, 1024);
+		try {
+			connection.setCoalesceUDP(true);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			connection.setFragmentUDP(true);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			connection.setFecUDP(4, 1);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		connection.setCoalesceUDP(false);
+
+		Server server = new Server(1024, 1024, new JsonSerialization());
+		try {
+			server.setCoalesceUDP(true);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		server.close();
+
+		// KryoSerialization wrapped for compression is allowed.
+		server = new Server(1024, 1024, new CompressingSerialization(new KryoSerialization()));
+		server.setCoalesceUDP(true);
+		server.close();
+	}
+
+	static public class Update {
+		public int id;
+		public String text;
+
+		public Update () {
+		}
+
+		public Update (int id) {
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.FecUDP;
+
+public class UdpFecTest extends KryoNetTestCase {
+	public void testFec () throws IOException {
+		final int count = 50;
+
+		final Server server = new Server();
+		server.setFecUDP(5, 1);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof String) connection.sendUDP(object);
+			}
+		});
+
+		// ----
+
+		final AtomicInteger received = new AtomicInteger();
+		Client client = new Client();
+		client.setFecUDP(4, 2);
+		startEndPoint(client);
+		client.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof String && received.incrementAndGet() == count) stopEndPoints();
+			}
+		});
+		client.connect(5000, host, tcpPort, udpPort);
+		for (int i = 0; i < count; i++)
+			client.sendUDP("message " + i);
+
+		waitForThreads(5000);
+		assertEquals(count, received.get());
+	}
+
+	public void testRebuild () {
+		UdpFec sender = new UdpFec(new Connection());
+		sender.setGroupSize(4, 1);
+		ArrayList<FecUDP> messages = new ArrayList();
+		byte[][] frames = {frame(10, 1), frame(3, 2), frame(25, 3), frame(7, 4)};
+		for (byte[] frame : frames)
+			messages.addAll(Arrays.asList(sender.add(frame)));
+		assertEquals(5, messages.size());
+
+		messages.remove(2);
+		ArrayList<byte[]> delivered = receive(messages);
+		assertEquals(4, delivered.size());
+		assertTrue(Arrays.equals(frames[2], delivered.get(3)));
+	}
+
+	public void testLateRebuilt () {
+		byte[][] frames = new byte[40][];
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = frame(8, i);
+		ArrayList<FecUDP> messages = send(frames, 4, 1);
+		assertEquals(50, messages.size());
+
+		// The rebuilt frame's original arrives after its group has been forgotten.
+		FecUDP late = messages.remove(2);
+		messages.add(late);
+		ArrayList<byte[]> delivered = receive(messages);
+		assertEquals(40, delivered.size());
+	}
+
+	public void testInterleaved () {
+		byte[][] frames = {frame(10, 1), frame(3, 2), frame(25, 3), frame(7, 4), frame(1, 5), frame(12, 6)};
+
+		// Frames 1 and 2 are covered by different parity.
+		ArrayList<FecUDP> messages = send(frames, 6, 2);
+		assertEquals(8, messages.size());
+		messages.remove(2);
+		messages.remove(1);
+		assertEquals(6, receive(messages).size());
+
+		// Frames 1 and 3 are covered by the same parity.
+		messages = send(frames, 6, 2);
+		messages.remove(3);
+		messages.remove(1);
+		assertEquals(4, receive(messages).size());
+	}
+
+	public void testPartialGroup () {
+		UdpFec sender = new UdpFec(new Connection());
+		sender.setGroupSize(8, 1);
+		ArrayList<FecUDP> messages = new ArrayList();
+		messages.addAll(Arrays.asList(sender.add(frame(5, 1))));
+		messages.addAll(Arrays.asList(sender.add(frame(6, 2))));
+		assertNull(sender.update(System.currentTimeMillis()));
+		FecUDP[] parity = sender.update(System.currentTimeMillis() + 1000);
+		assertEquals(1, parity.length);
+		assertEquals(2, parity[0].count);
+		messages.addAll(Arrays.asList(parity));
+
+		messages.remove(0);
+		ArrayList<byte[]> delivered = receive(messages);
+		assertEquals(2, delivered.size());
+		assertTrue(Arrays.equals(frame(5, 1), delivered.get(1)));
+	}
+
+	static private ArrayList<FecUDP> send (byte[][] frames, int groupSize, int parityCount) {
+		UdpFec sender = new UdpFec(new Connection());
+		sender.setGroupSize(groupSize, parityCount);
+		ArrayList<FecUDP> messages = new ArrayList();
+		for (byte[] frame : frames)
+			messages.addAll(Arrays.asList(sender.add(frame)));
+		return messages;
+	}
+
+	static private ArrayList<byte[]> receive (ArrayList<FecUDP> messages) {
+		UdpFec receiver = new UdpFec(new Connection());
+		ArrayList<byte[]> delivered = new ArrayList();
+		for (FecUDP message : messages) {
+			ArrayList<byte[]> frames = receiver.received(message);
+			if (frames != null) delivered.addAll(frames);
+		}
+		return delivered;
+	}
+
+	static private byte[] frame (int length, int value) {
+		byte[] frame = new byte[length];
+		for (int i = 0; i < length; i++)
+			frame[i] = (byte)(value * 31 + i);
+		return frame;
+	}
+}
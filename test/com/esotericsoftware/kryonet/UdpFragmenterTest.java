@@ -0,0 +1,123 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentRequestUDP;
+import com.esotericsoftware.kryonet.FrameworkMessage.FragmentUDP;
+
+public class UdpFragmenterTest extends KryoNetTestCase {
+	public void testFragmentation () throws IOException {
+		final Server server = new Server();
+		server.getKryo().register(Snapshot.class);
+		server.getKryo().register(int[].class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		final AtomicReference<Snapshot> received = new AtomicReference();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof Snapshot)) return;
+				received.set((Snapshot)object);
+				stopEndPoints();
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		client.getKryo().register(Snapshot.class);
+		client.getKryo().register(int[].class);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		client.setUdpMtu(200);
+		client.setFragmentUDP(true);
+		Snapshot snapshot = new Snapshot(500);
+		client.sendUDP(snapshot);
+
+		waitForThreads(5000);
+		assertNotNull(received.get());
+		assertTrue(Arrays.equals(snapshot.values, received.get().values));
+	}
+
+	public void testRerequest () {
+		Connection connection = new Connection();
+		connection.setUdpMtu(116);
+		UdpFragmenter sender = new UdpFragmenter(connection);
+		UdpFragmenter receiver = new UdpFragmenter(connection);
+
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)i;
+		FragmentUDP[] fragments = sender.split(bytes);
+		assertEquals(10, fragments.length);
+
+		// Lose fragments 3 and 7.
+		for (int i = 0; i < fragments.length; i++)
+			if (i != 3 && i != 7) assertNull(receiver.received(fragments[i], 2048, 0));
+		assertNull(receiver.update(10));
+		ArrayList<FragmentRequestUDP> requests = receiver.update(100);
+		assertEquals(1, requests.size());
+		assertEquals("[3, 7]", Arrays.toString(requests.get(0).missing));
+		// Only one request is sent.
+		assertNull(receiver.update(200));
+
+		ArrayList<FragmentUDP> resend = sender.requested(requests.get(0));
+		assertEquals(2, resend.size());
+		assertNull(receiver.received(resend.get(0), 2048, 300));
+		assertTrue(Arrays.equals(bytes, receiver.received(resend.get(1), 2048, 300)));
+	}
+
+	public void testLimits () {
+		Connection connection = new Connection();
+		connection.setUdpMtu(116);
+		UdpFragmenter sender = new UdpFragmenter(connection);
+		UdpFragmenter receiver = new UdpFragmenter(connection);
+
+		// Larger than the object buffer.
+		FragmentUDP[] fragments = sender.split(new byte[1000]);
+		for (int i = 0; i < fragments.length; i++)
+			assertNull(receiver.received(fragments[i], 500, 0));
+
+		// Timed out.
+		fragments = sender.split(new byte[1000]);
+		for (int i = 1; i < fragments.length; i++)
+			assertNull(receiver.received(fragments[i], 2048, 0));
+		receiver.update(5000);
+		assertNull(receiver.received(fragments[0], 2048, 5000));
+	}
+
+	static public class Snapshot {
+		public int[] values;
+
+		public Snapshot () {
+		}
+
+		public Snapshot (int count) {
+			values = new int[count];
+			for (int i = 0; i < count; i++)
+				values[i] = i * 7919;
+		}
+	}
+}
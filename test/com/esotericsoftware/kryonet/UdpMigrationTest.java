@@ -0,0 +1,123 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class UdpMigrationTest extends KryoNetTestCase {
+	public void testMigration () throws IOException {
+		final AtomicReference<String> received = new AtomicReference();
+		final Server server = new Server();
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof String)) return;
+				received.set((String)object);
+				connection.sendUDP("reply");
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		client.setMigrateUDP(true);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		assertNotNull(client.udp.token);
+		// The token header is written in front of the object.
+		assertEquals(client.udp.serialize(client, "original").length + UdpToken.length, client.sendUDP("original"));
+		waitFor(received, "original");
+		int sequence = client.udp.token.sequence;
+
+		// Send from a new socket, as if the client's address changed.
+		DatagramSocket socket = new DatagramSocket();
+		socket.setSoTimeout(250);
+		try {
+			// A datagram with the wrong key or older than one already received does not move the connection.
+			byte[] wrongKey = client.udpKey.clone();
+			wrongKey[0]++;
+			send(socket, client, new UdpToken(client.udpToken, wrongKey), sequence + 1000, "wrong key");
+			send(socket, client, new UdpToken(client.udpToken, client.udpKey), sequence, "old");
+			try {
+				receive(socket, client);
+				fail();
+			} catch (SocketTimeoutException expected) {
+			}
+			assertEquals("original", received.get());
+
+			// The first newer datagram with a valid MAC moves the connection, without a round trip.
+			socket.setSoTimeout(5000);
+			send(socket, client, new UdpToken(client.udpToken, client.udpKey), sequence + 1000, "moved");
+			assertEquals("reply", receive(socket, client));
+			assertEquals("moved", received.get());
+			InetSocketAddress address = server.getConnections()[0].getRemoteAddressUDP();
+			assertEquals(socket.getLocalPort(), address.getPort());
+
+			// A delayed datagram from the old address does not move the connection back.
+			client.sendUDP("delayed");
+			sleep(250);
+			assertEquals("moved", received.get());
+			assertEquals(address, server.getConnections()[0].getRemoteAddressUDP());
+		} finally {
+			socket.close();
+		}
+
+		stopEndPoints();
+		waitForThreads();
+	}
+
+	/** Sends the object with the token header, as the client would. */
+	private void send (DatagramSocket socket, Client client, UdpToken token, int sequence, String object) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.position(UdpToken.length);
+		buffer.put(client.udp.serialize(client, object));
+		token.sequence = sequence - 1;
+		token.write(buffer);
+		socket.send(new DatagramPacket(buffer.array(), buffer.position(), new InetSocketAddress(host, udpPort)));
+	}
+
+	private Object receive (DatagramSocket socket, Client client) throws IOException {
+		byte[] buffer = new byte[1024];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		socket.receive(packet);
+		return client.udp.deserialize(client, Arrays.copyOf(buffer, packet.getLength()));
+	}
+
+	private void waitFor (AtomicReference<String> received, String value) {
+		for (int i = 0; i < 100 && !value.equals(received.get()); i++)
+			sleep(50);
+		assertEquals(value, received.get());
+	}
+
+	private void sleep (int millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ignored) {
+		}
+	}
+}
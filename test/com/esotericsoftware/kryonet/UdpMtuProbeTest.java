@@ -0,0 +1,100 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+
+import com.esotericsoftware.kryonet.FrameworkMessage.MtuProbeUDP;
+
+public class UdpMtuProbeTest extends KryoNetTestCase {
+	public void testProbe () throws IOException {
+		final Server server = new Server();
+		server.setProbeUdpMtu(true);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+
+		// ----
+
+		final Client client = new Client();
+		client.setProbeUdpMtu(true);
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+
+		long endTime = System.currentTimeMillis() + 5000;
+		while (client.isProbingUdpMtu() || server.getConnections()[0].isProbingUdpMtu()) {
+			assertTrue(System.currentTimeMillis() < endTime);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException ignored) {
+			}
+		}
+		// Every probe arrives over the loopback interface.
+		assertEquals(UdpMtuProber.maxSize, client.getUdpMtu());
+		assertEquals(UdpMtuProber.maxSize, server.getConnections()[0].getUdpMtu());
+		stopEndPoints();
+		waitForThreads();
+	}
+
+	public void testSearch () {
+		// Datagrams larger than 1000 bytes are lost.
+		Connection connection = new Connection();
+		int probes = probe(connection, 1000);
+		assertTrue(connection.getUdpMtu() <= 1000);
+		assertTrue(connection.getUdpMtu() > 1000 - 16);
+		assertTrue(probes < 20);
+	}
+
+	public void testOnlyMinimum () {
+		// Every datagram larger than the minimum is lost, including the configured MTU.
+		Connection connection = new Connection();
+		probe(connection, UdpMtuProber.minSize);
+		assertEquals(UdpMtuProber.minSize, connection.getUdpMtu());
+	}
+
+	public void testNothingConfirmed () {
+		// No probe arrives, so nothing is known about the path.
+		Connection connection = new Connection();
+		probe(connection, 0);
+		assertEquals(1200, connection.getUdpMtu());
+	}
+
+	/** Probes until finished, acknowledging the probes up to the specified size.
+	 * @return The number of probes sent. */
+	private int probe (Connection connection, int maxArriving) {
+		UdpMtuProber prober = new UdpMtuProber(connection);
+		prober.start(UdpMtuProber.maxSize);
+		long time = 1;
+		int probes = 0;
+		while (prober.isProbing()) {
+			int size = prober.update(time, -1);
+			time += 1000;
+			if (size == -1) continue;
+			probes++;
+			if (size <= maxArriving) {
+				MtuProbeUDP reply = new MtuProbeUDP();
+				reply.size = size;
+				reply.isReply = true;
+				prober.acknowledged(reply);
+			}
+		}
+		return probes;
+	}
+}
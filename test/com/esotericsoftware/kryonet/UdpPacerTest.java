@@ -0,0 +1,144 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UdpPacerTest extends KryoNetTestCase {
+	public void testPacing () throws IOException {
+		final int count = 200;
+
+		final Server server = new Server();
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+		final AtomicInteger received = new AtomicInteger();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (object instanceof byte[] && received.incrementAndGet() == count) stopEndPoints();
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort, udpPort);
+		client.setPaceUDP(400 * 1024);
+		for (int i = 0; i < count; i++)
+			client.sendUDP(new byte[1000]);
+
+		waitForThreads(5000);
+		assertEquals(count, received.get());
+	}
+
+	public void testBurst () throws IOException {
+		RecordingConnection connection = new RecordingConnection();
+		UdpPacer pacer = new UdpPacer(connection, 100 * 1024, 100 * 1024);
+		for (int i = 0; i < 50; i++)
+			assertEquals(1000, pacer.send(new byte[1000]));
+		// The bucket starts with 2 MTUs, and one datagram may overdraw it.
+		assertEquals(3, connection.sent);
+		assertTrue(pacer.update(System.currentTimeMillis(), -1) > 0);
+		assertTrue(connection.sent < 50);
+	}
+
+	public void testQueueLimit () throws IOException {
+		RecordingConnection connection = new RecordingConnection();
+		UdpPacer pacer = new UdpPacer(connection, 20 * 1024, 8000);
+		int dropped = 0;
+		for (int i = 0; i < 20; i++)
+			if (pacer.send(new byte[1000]) == -1) dropped++;
+		assertEquals(20 - 3 - 8, dropped);
+	}
+
+	public void testInvalidRate () throws IOException {
+		Server server = new Server();
+		try {
+			server.setPaceUDP(UdpPacer.minRate - 1);
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			server.setPaceUDP(-1);
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		server.setPaceUDP(0);
+		server.setPaceUDP(UdpPacer.minRate);
+	}
+
+	public void testCongestion () throws IOException {
+		RecordingConnection connection = new RecordingConnection();
+		UdpPacer pacer = new UdpPacer(connection, 1024 * 1024, 1024 * 1024);
+		int rate = pacer.getRate();
+		assertEquals(256 * 1024, rate);
+
+		// Slow start doubles the rate each round trip while the rate limits sending.
+		long time = 1000;
+		for (int i = 0; i < 10; i++)
+			pacer.send(new byte[1000]);
+		pacer.update(time, 50);
+		assertEquals(rate * 2, pacer.getRate());
+
+		// Loss halves the rate, at most once per round trip.
+		pacer.lost(time + 10);
+		assertEquals(rate, pacer.getRate());
+		pacer.lost(time + 20);
+		assertEquals(rate, pacer.getRate());
+
+		// After loss, the rate grows by one MTU per round trip.
+		pacer.update(time + 50, 50);
+		assertEquals(rate, pacer.getRate());
+		pacer.update(time + 100, 50);
+		assertEquals(rate + connection.getUdpMtu() * 1000 / 50, pacer.getRate());
+
+		// The rate never drops below the minimum.
+		for (int i = 0; i < 20; i++)
+			pacer.lost(time + 1000 + i * 1000);
+		assertEquals(UdpPacer.minRate, pacer.getRate());
+	}
+
+	public void testSocketBufferFull () throws IOException {
+		RecordingConnection connection = new RecordingConnection();
+		UdpPacer pacer = new UdpPacer(connection, 1024 * 1024, 1024 * 1024);
+		connection.full = true;
+		assertEquals(1000, pacer.send(new byte[1000]));
+		assertEquals(128 * 1024, pacer.getRate());
+		assertEquals(0, connection.sent);
+
+		// The queued datagram is sent once the socket buffer has room.
+		connection.full = false;
+		assertEquals(-1, pacer.update(System.currentTimeMillis(), -1));
+		assertEquals(1, connection.sent);
+	}
+
+	static class RecordingConnection extends Connection {
+		int sent;
+		boolean full;
+
+		int sendDatagram (byte[] bytes) {
+			if (full) return -1;
+			sent++;
+			return bytes.length;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UdpSocketCountTest extends KryoNetTestCase {
+	public void testMultipleSockets () throws IOException {
+		// The operating system spreads clients across the sockets by address, so enough are used that both sockets get some.
+		final int clients = 16;
+
+		final Server server = new Server();
+		server.setUdpSocketCount(2);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+		final Set<UdpConnection> sockets = Collections.newSetFromMap(new IdentityHashMap());
+		final AtomicBoolean otherThread = new AtomicBoolean();
+		server.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof String)) return;
+				// Datagrams from every socket are dispatched on the update thread.
+				if (Thread.currentThread() != server.getUpdateThread()) otherThread.set(true);
+				sockets.add(connection.udp);
+				connection.sendUDP("echo " + object);
+			}
+		});
+
+		// ----
+
+		final AtomicInteger received = new AtomicInteger();
+		for (int i = 0; i < clients; i++) {
+			Client client = new Client();
+			startEndPoint(client);
+			client.addListener(new Listener() {
+				public void received (Connection connection, Object object) {
+					if (!(object instanceof String)) return;
+					assertTrue(((String)object).startsWith("echo "));
+					if (received.incrementAndGet() == clients) stopEndPoints();
+				}
+			});
+			client.connect(5000, host, tcpPort, udpPort);
+			client.sendUDP("client " + i);
+		}
+
+		waitForThreads(5000);
+		assertEquals(clients, received.get());
+		// Without SO_REUSEPORT a single socket is used. Only Linux spreads datagrams across sockets that share a port.
+		if (UdpConnection.reusePortOption() != null && System.getProperty("os.name").startsWith("Linux"))
+			assertEquals(2, sockets.size());
+		else
+			assertTrue(sockets.size() >= 1 && sockets.size() <= 2);
+		assertFalse(otherThread.get());
+	}
+}
@@ -0,0 +1,144 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryonet.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.CompressingSerialization;
+import com.esotericsoftware.kryonet.CompressingSerialization.DeflateCodec;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetException;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.KryoSerialization;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Server;
+
+public class CompressingSerializationTest extends KryoNetTestCase {
+	static private final byte[] dictionary = "Compressed text message".getBytes();
+
+	public void testCompression () throws IOException {
+		final String text = repeat("Compressed text message ", 60);
+
+		KryoSerialization serverKryo = new KryoSerialization();
+		serverKryo.setDictionarySize(16);
+		final Server server = new Server(16384, 2048, new CompressingSerialization(serverKryo, new DeflateCodec(
+			Deflater.BEST_SPEED, dictionary)));
+		server.getKryo().register(Message.class);
+		startEndPoint(server);
+		server.bind(tcpPort, udpPort);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				connection.sendTCP(new Message(text));
+				connection.sendTCP(new Message("small"));
+				connection.sendTCP(new Message(text));
+				connection.sendUDP(new Message(text));
+			}
+		});
+
+		// ----
+
+		final AtomicInteger received = new AtomicInteger();
+		KryoSerialization clientKryo = new KryoSerialization();
+		clientKryo.setDictionarySize(16);
+		Client client = new Client(8192, 2048, new CompressingSerialization(clientKryo, new DeflateCodec(Deflater.BEST_SPEED,
+			dictionary)));
+		client.getKryo().register(Message.class);
+		startEndPoint(client);
+		client.addListener(new Listener() {
+			public void received (Connection connection, Object object) {
+				if (!(object instanceof Message)) return;
+				String value = ((Message)object).text;
+				assertTrue(value.equals(text) || value.equals("small"));
+				if (received.incrementAndGet() == 4) stopEndPoints();
+			}
+		});
+		client.connect(5000, host, tcpPort, udpPort);
+
+		waitForThreads(5000);
+		assertEquals(4, received.get());
+	}
+
+	public void testThreshold () {
+		KryoSerialization kryoSerialization = new KryoSerialization();
+		kryoSerialization.getKryo().register(Message.class);
+		CompressingSerialization serialization = new CompressingSerialization(kryoSerialization);
+		serialization.setThreshold(64);
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+		// Small objects are written with only the flag byte added.
+		serialization.write(null, buffer, new Message("small"));
+		int smallLength = buffer.position();
+		buffer.clear();
+		kryoSerialization.write(null, buffer, new Message("small"));
+		assertEquals(buffer.position() + 1, smallLength);
+
+		String text = repeat("abc", 500);
+		buffer.clear();
+		serialization.write(null, buffer, new Message(text));
+		assertTrue(buffer.position() < 100);
+		buffer.flip();
+		assertEquals(text, ((Message)serialization.read(null, buffer)).text);
+		assertFalse(buffer.hasRemaining());
+	}
+
+	/** A corrupt uncompressed length is rejected before anything is allocated for it. */
+	public void testInvalidLength () {
+		CompressingSerialization serialization = new CompressingSerialization(new KryoSerialization());
+		int[] lengths = {0, -1, 4097, Integer.MAX_VALUE};
+		for (int length : lengths) {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			buffer.put((byte)1);
+			while (length >>> 7 != 0) {
+				buffer.put((byte)((length & 0x7f) | 0x80));
+				length >>>= 7;
+			}
+			buffer.put((byte)length);
+			buffer.put(new byte[16]);
+			buffer.flip();
+			try {
+				serialization.read(null, buffer);
+				fail();
+			} catch (KryoNetException expected) {
+			}
+		}
+	}
+
+	static private String repeat (String value, int count) {
+		StringBuilder buffer = new StringBuilder(value.length() * count);
+		for (int i = 0; i < count; i++)
+			buffer.append(value);
+		return buffer.toString();
+	}
+
+	static public class Message {
+		public String text;
+
+		public Message () {
+		}
+
+		public Message (String text) {
+			this.text = text;
+		}
+	}
+}
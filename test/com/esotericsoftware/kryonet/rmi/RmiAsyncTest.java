@@ -0,0 +1,117 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Server;
+import com.esotericsoftware.kryonet.rmi.RmiPipelineTest.Adder;
+import com.esotericsoftware.kryonet.rmi.RmiPipelineTest.AdderImpl;
+
+public class RmiAsyncTest extends KryoNetTestCase {
+	public void testAsync () throws IOException {
+		final int calls = 5000;
+
+		Server server = new Server();
+		RmiPipelineTest.register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client(16384, 8192);
+		RmiPipelineTest.register(client.getKryo());
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort);
+
+		final AtomicInteger sum = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(calls);
+		AsyncAdder adder = ObjectSpace.getAsyncRemoteObject(client, 42, AsyncAdder.class, Adder.class);
+		for (int i = 0; i < calls; i++) {
+			adder.add(i, 1).addCallback(new RemoteFuture.Callback<Integer>() {
+				public void completed (Integer result) {
+					sum.addAndGet(result);
+					latch.countDown();
+				}
+
+				public void failed (Throwable exception) {
+					exception.printStackTrace();
+				}
+			});
+		}
+		try {
+			latch.await();
+			assertEquals(calls * (calls + 1) / 2, sum.get());
+			assertEquals(7, (int)adder.add(3, 4).get());
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		assertEquals(0, PendingCalls.get(client).size());
+
+		// An object that isn't registered never responds.
+		AsyncAdder missing = ObjectSpace.getAsyncRemoteObject(client, 43, AsyncAdder.class, Adder.class);
+		((RemoteObject)missing).setResponseTimeout(250);
+		RemoteFuture<Integer> future = missing.add(1, 2);
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TimeoutException);
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+		assertEquals(0, PendingCalls.get(client).size());
+
+		// Pending futures fail when the connection closes.
+		future = missing.add(1, 2);
+		client.close();
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException ex) {
+			assertFalse(ex.getCause() instanceof TimeoutException);
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		stopEndPoints();
+		waitForThreads();
+	}
+
+	static public interface AsyncAdder {
+		public RemoteFuture<Integer> add (int a, int b);
+	}
+}
@@ -0,0 +1,174 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Server;
+
+public class RmiBulkheadTest extends KryoNetTestCase {
+	public void testBulkhead () throws Exception {
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		Bulkhead bulkhead = new Bulkhead(executor, 1, 1);
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new ServiceImpl());
+		serverObjectSpace.setBulkhead(42, "slow", bulkhead);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		register(client.getKryo());
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort);
+
+		AsyncService service = ObjectSpace.getAsyncRemoteObject(client, 42, AsyncService.class, Service.class);
+		RemoteFuture<Integer>[] slow = new RemoteFuture[4];
+		for (int i = 0; i < slow.length; i++)
+			slow[i] = service.slow(i);
+
+		// The fast method runs on the update thread while the slow ones wait on the bulkhead.
+		assertEquals(3, (int)service.fast(3).get());
+		assertFalse(slow[0].isDone());
+		assertEquals(1, bulkhead.getActive());
+		assertEquals(1, bulkhead.getQueued());
+		assertEquals(2, bulkhead.getRejected());
+
+		assertEquals(0, (int)slow[0].get());
+		assertEquals(1, (int)slow[1].get());
+		for (int i = 2; i < slow.length; i++) {
+			try {
+				slow[i].get();
+				fail();
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof RejectedInvocationException);
+			}
+		}
+		// The server finishes with the bulkhead after sending the response.
+		for (int i = 0; i < 20 && bulkhead.getActive() > 0; i++)
+			Thread.sleep(50);
+		assertEquals(0, bulkhead.getActive());
+		assertEquals(0, bulkhead.getQueued());
+
+		stopEndPoints();
+		waitForThreads();
+		executor.shutdown();
+	}
+
+	/** Batched invocations of a bulkheaded method are limited by the bulkhead. */
+	public void testBatch () throws Exception {
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		Bulkhead bulkhead = new Bulkhead(executor, 1, 1);
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new ServiceImpl());
+		serverObjectSpace.setBulkhead(42, "slow", bulkhead);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		register(client.getKryo());
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort);
+
+		Service service = ObjectSpace.getRemoteObject(client, 42, Service.class);
+		RemoteObject remote = (RemoteObject)service;
+		remote.setNonBlocking(true);
+		remote.setBatching(10, 0);
+		int[] slow = new int[4];
+		for (int i = 0; i < slow.length; i++) {
+			service.slow(i);
+			slow[i] = remote.getLastCallID();
+		}
+		service.fast(3);
+		int fast = remote.getLastCallID();
+		remote.flushBatch();
+
+		// The fast method is answered without waiting for the slow ones.
+		assertEquals(3, remote.waitForResponse(fast));
+		assertEquals(2, bulkhead.getRejected());
+		assertEquals(0, remote.waitForResponse(slow[0]));
+		assertEquals(1, remote.waitForResponse(slow[1]));
+		for (int i = 2; i < slow.length; i++)
+			assertTrue(remote.waitForResponse(slow[i]) instanceof RejectedInvocationException);
+
+		stopEndPoints();
+		waitForThreads();
+		executor.shutdown();
+	}
+
+	static public void register (Kryo kryo) {
+		kryo.register(Service.class);
+		ObjectSpace.registerClasses(kryo);
+	}
+
+	static public interface Service {
+		public int slow (int value);
+
+		public int fast (int value);
+	}
+
+	static public interface AsyncService {
+		public RemoteFuture<Integer> slow (int value);
+
+		public RemoteFuture<Integer> fast (int value);
+	}
+
+	static public class ServiceImpl implements Service {
+		public int slow (int value) {
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException ignored) {
+			}
+			return value;
+		}
+
+		public int fast (int value) {
+			return value;
+		}
+	}
+}
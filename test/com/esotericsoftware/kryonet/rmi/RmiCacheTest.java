@@ -0,0 +1,134 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Listener.ThreadedListener;
+import com.esotericsoftware.kryonet.Server;
+
+public class RmiCacheTest extends KryoNetTestCase {
+	public void testCache () throws IOException {
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		final ConfigImpl config = new ConfigImpl();
+		serverObjectSpace.register(42, config);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Config remote = ObjectSpace.getRemoteObject(connection, 42, Config.class);
+
+				// Cached until invalidated.
+				assertEquals("one", remote.getName(1));
+				assertEquals("one", remote.getName(1));
+				assertEquals("two", remote.getName(2));
+				assertEquals(2, config.invocations.get());
+				config.suffix = "!";
+				assertEquals("one", remote.getName(1));
+				serverObjectSpace.invalidateCache(42, "getName");
+				sleep(250);
+				assertEquals("one!", remote.getName(1));
+				assertEquals(3, config.invocations.get());
+
+				// Cached until the TTL expires.
+				assertEquals(1, remote.getCount());
+				assertEquals(1, remote.getCount());
+				sleep(250);
+				assertEquals(2, remote.getCount());
+
+				// Not cached.
+				remote.setCount(10);
+				remote.setCount(10);
+				assertEquals(7, config.invocations.get());
+
+				((RemoteObject)remote).clearCache();
+				assertEquals("one!", remote.getName(1));
+				assertEquals(8, config.invocations.get());
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	static void sleep (int millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	static public void register (Kryo kryo) {
+		kryo.register(Config.class);
+		ObjectSpace.registerClasses(kryo);
+	}
+
+	static public interface Config {
+		@Cacheable
+		public String getName (int id);
+
+		@Cacheable(ttl = 100)
+		public int getCount ();
+
+		public void setCount (int count);
+	}
+
+	static public class ConfigImpl implements Config {
+		final AtomicInteger invocations = new AtomicInteger();
+		volatile String suffix = "";
+		int count;
+
+		public String getName (int id) {
+			invocations.incrementAndGet();
+			return (id == 1 ? "one" : "two") + suffix;
+		}
+
+		public int getCount () {
+			invocations.incrementAndGet();
+			return ++count;
+		}
+
+		public void setCount (int count) {
+			invocations.incrementAndGet();
+		}
+	}
+}
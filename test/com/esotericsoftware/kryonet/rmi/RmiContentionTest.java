@@ -0,0 +1,93 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Server;
+import com.esotericsoftware.kryonet.rmi.RmiPipelineTest.Adder;
+import com.esotericsoftware.kryonet.rmi.RmiPipelineTest.AdderImpl;
+
+/** Many threads making blocking calls through one proxy. */
+public class RmiContentionTest extends KryoNetTestCase {
+	public void testContention () throws IOException, InterruptedException {
+		final int threadCount = 64, calls = 300;
+
+		Server server = new Server();
+		RmiPipelineTest.register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client(16384, 8192);
+		RmiPipelineTest.register(client.getKryo());
+		startEndPoint(client);
+		client.connect(5000, host, tcpPort);
+
+		final Adder adder = ObjectSpace.getRemoteObject(client, 42, Adder.class);
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference();
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int id = i;
+			threads[i] = new Thread() {
+				public void run () {
+					for (int ii = 0; ii < calls; ii++)
+						if (adder.add(id, ii) != id + ii) errors.incrementAndGet();
+				}
+			};
+			threads[i].setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				public void uncaughtException (Thread thread, Throwable ex) {
+					failure.compareAndSet(null, ex);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		long time = System.nanoTime() - start;
+		info("kryonet", threadCount + " threads made " + threadCount * calls + " calls in " + time / 1000000 + "ms");
+		stopEndPoints();
+		waitForThreads();
+
+		if (failure.get() != null) throw new AssertionError(failure.get());
+		assertEquals(0, errors.get());
+	}
+}
@@ -0,0 +1,305 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Listener.ThreadedListener;
+import com.esotericsoftware.kryonet.Server;
+import com.esotericsoftware.kryonet.rmi.ObjectSpace.CachedMethod;
+
+public class RmiPipelineTest extends KryoNetTestCase {
+	/** Makes thousands of non-blocking calls before retrieving any of the responses. */
+	public void testPipelining () throws IOException {
+		final int calls = 5000;
+
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client(16384, 8192);
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Adder adder1 = ObjectSpace.getRemoteObject(connection, 42, Adder.class);
+				Adder adder2 = ObjectSpace.getRemoteObject(connection, 42, Adder.class);
+				RemoteObject remote1 = (RemoteObject)adder1, remote2 = (RemoteObject)adder2;
+				remote1.setNonBlocking(true);
+				remote2.setNonBlocking(true);
+
+				int[] callIDs = new int[calls];
+				HashSet<Integer> unique = new HashSet();
+				for (int i = 0; i < calls; i++) {
+					RemoteObject remote = i % 2 == 0 ? remote1 : remote2;
+					((Adder)remote).add(i, 1);
+					callIDs[i] = remote.getLastCallID();
+					assertTrue(unique.add(callIDs[i]));
+				}
+				for (int i = calls - 1; i >= 0; i--) {
+					RemoteObject remote = i % 2 == 0 ? remote1 : remote2;
+					assertEquals(i + 1, remote.waitForResponse(callIDs[i]));
+				}
+				assertEquals(0, PendingCalls.get(connection).size());
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	/** Non-blocking calls whose responses are never retrieved don't accumulate. */
+	public void testUnretrievedResponses () throws IOException {
+		final int calls = 1000;
+
+		Server server = new Server(256 * 1024, 2048);
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client(256 * 1024, 2048);
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Adder adder = ObjectSpace.getRemoteObject(connection, 42, Adder.class);
+				RemoteObject remote = (RemoteObject)adder;
+				remote.setNonBlocking(true);
+				PendingCalls pendingCalls = PendingCalls.get(connection);
+
+				// A void call's response is only kept until the next invocation, unless its call ID is asked for.
+				for (int i = 0; i < calls; i++) {
+					adder.ping();
+					assertEquals(1, pendingCalls.size());
+				}
+				adder.ping();
+				int callID = remote.getLastCallID();
+				adder.add(1, 2);
+				assertNull(remote.waitForResponse(callID));
+				assertEquals(3, remote.waitForLastResponse());
+				assertEquals(0, pendingCalls.size());
+
+				// Only the most recent calls are stored.
+				for (int i = 0; i < PendingCalls.maxStored + calls; i++)
+					adder.add(i, 1);
+				assertEquals(PendingCalls.maxStored, pendingCalls.size());
+				assertEquals(PendingCalls.maxStored + calls, remote.waitForLastResponse());
+				assertEquals(PendingCalls.maxStored - 1, pendingCalls.size());
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	/** Each proxy's responses are routed to it by call ID, however many proxies share the connection. */
+	public void testManyProxies () throws IOException {
+		final int proxies = 500;
+
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client(16384, 8192);
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				RemoteObject[] remotes = new RemoteObject[proxies];
+				int[] callIDs = new int[proxies];
+				for (int i = 0; i < proxies; i++) {
+					remotes[i] = (RemoteObject)ObjectSpace.getRemoteObject(connection, 42, Adder.class);
+					remotes[i].setNonBlocking(true);
+					((Adder)remotes[i]).add(i, i);
+					callIDs[i] = remotes[i].getLastCallID();
+				}
+				for (int i = 0; i < proxies; i++)
+					assertEquals(i * 2, remotes[i].waitForResponse(callIDs[i]));
+				// A closed proxy ignores its responses.
+				remotes[0].close();
+				((Adder)remotes[0]).add(1, 2);
+				assertEquals(3, ((Adder)ObjectSpace.getRemoteObject(connection, 42, Adder.class)).add(1, 2));
+				assertFalse(remotes[0].hasResponse(remotes[0].getLastCallID()));
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	/** Invocations are sent and answered in batches. */
+	public void testBatching () throws IOException {
+		final int calls = 1000;
+
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(42, new AdderImpl());
+		final AtomicInteger batches = new AtomicInteger();
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+
+			public void received (Connection connection, Object object) {
+				if (object instanceof ObjectSpace.InvokeMethodBatch) batches.incrementAndGet();
+			}
+		});
+
+		// ----
+
+		Client client = new Client(16384, 8192);
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Adder adder = ObjectSpace.getRemoteObject(connection, 42, Adder.class);
+				RemoteObject remote = (RemoteObject)adder;
+				remote.setNonBlocking(true);
+				remote.setBatching(100, 0);
+
+				int[] callIDs = new int[calls];
+				for (int i = 0; i < calls; i++) {
+					adder.add(i, 2);
+					callIDs[i] = remote.getLastCallID();
+				}
+				for (int i = 0; i < calls; i++)
+					assertEquals(i + 2, remote.waitForResponse(callIDs[i]));
+				assertEquals(calls / 100, batches.get());
+
+				// A partial batch is sent after the delay.
+				remote.setBatching(100, 50);
+				adder.add(1, 1);
+				adder.add(2, 2);
+				int callID = remote.getLastCallID();
+				try {
+					Thread.sleep(500);
+				} catch (InterruptedException ex) {
+				}
+				assertTrue(remote.hasResponse(callID));
+				assertEquals(4, remote.waitForResponse(callID));
+				assertEquals(calls / 100 + 1, batches.get());
+
+				// A blocking invocation sends the batch.
+				remote.setNonBlocking(false);
+				assertEquals(5, adder.add(2, 3));
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	/** A call on a connection that is not connected waits for its response on the pending calls it was added to. */
+	public void testNotConnected () {
+		Client client = new Client();
+		register(client.getKryo());
+		Adder adder = ObjectSpace.getRemoteObject(client, 42, Adder.class);
+		((RemoteObject)adder).setResponseTimeout(100);
+		try {
+			adder.add(1, 2);
+			fail("Expected TimeoutException.");
+		} catch (TimeoutException expected) {
+		}
+	}
+
+	/** Method class IDs come from each Kryo's registrations, so methods are cached per Kryo. */
+	public void testMethodCachePerKryo () {
+		Kryo kryo1 = new Kryo();
+		register(kryo1);
+		Kryo kryo2 = new Kryo();
+		kryo2.register(String[].class);
+		register(kryo2);
+
+		CachedMethod[] methods1 = ObjectSpace.getMethods(kryo1, Adder.class);
+		CachedMethod[] methods2 = ObjectSpace.getMethods(kryo2, Adder.class);
+		assertSame(methods1, ObjectSpace.getMethods(kryo1, Adder.class));
+		assertEquals(kryo1.getRegistration(Adder.class).getId(), methods1[0].methodClassID);
+		assertEquals(kryo2.getRegistration(Adder.class).getId(), methods2[0].methodClassID);
+		assertFalse(methods1[0].methodClassID == methods2[0].methodClassID);
+	}
+
+	static public void register (Kryo kryo) {
+		kryo.register(Adder.class);
+		ObjectSpace.registerClasses(kryo);
+	}
+
+	static public interface Adder {
+		public int add (int a, int b);
+
+		public void ping ();
+	}
+
+	static public class AdderImpl implements Adder {
+		public int add (int a, int b) {
+			return a + b;
+		}
+
+		public void ping () {
+		}
+	}
+}
@@ -29,6 +29,7 @@ import com.esotericsoftware.kryonet.Server;
 import com.esotericsoftware.kryonet.rmi.ObjectSpace.RemoteObjectSerializer;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RmiSendObjectTest extends KryoNetTestCase {
 	/** In this test the server has two objects in an object space. The client uses the first remote object to get the second remote
@@ -92,6 +93,55 @@ public class RmiSendObjectTest extends KryoNetTestCase {
 		waitForThreads();
 	}
 
+	/** A registered object broadcast to all connections is received as a proxy by each client. */
+	public void testBroadcastRemoteObject () throws IOException {
+		broadcastRemoteObject(false);
+		broadcastRemoteObject(true);
+	}
+
+	private void broadcastRemoteObject (boolean prepareBroadcasts) throws IOException {
+		final Server server = new Server();
+		server.setPrepareBroadcasts(prepareBroadcasts);
+		Kryo serverKryo = server.getKryo();
+		register(serverKryo);
+		int otherObjectID = serverKryo.getRegistration(OtherObject.class).getId();
+		serverKryo.register(OtherObjectImpl.class, new RemoteObjectSerializer(), otherObjectID);
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final OtherObjectImpl serverOtherObject = new OtherObjectImpl();
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.register(777, serverOtherObject);
+		final AtomicInteger connected = new AtomicInteger();
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+				if (connected.incrementAndGet() == 2) server.sendToAllTCP(serverOtherObject);
+			}
+		});
+
+		// ----
+
+		final AtomicInteger received = new AtomicInteger();
+		for (int i = 0; i < 2; i++) {
+			Client client = new Client();
+			register(client.getKryo());
+			startEndPoint(client);
+			client.addListener(new ThreadedListener(new Listener() {
+				public void received (Connection connection, Object object) {
+					if (!(object instanceof OtherObject)) return;
+					assertEquals(12.34f, ((OtherObject)object).value());
+					if (received.incrementAndGet() == 2) stopEndPoints();
+				}
+			}));
+			client.connect(5000, host, tcpPort);
+		}
+
+		waitForThreads();
+		assertEquals(2, received.get());
+		serverObjectSpace.close();
+	}
+
 	/** Registers the same classes in the same order on both the client and server. */
 	static public void register (Kryo kryo) {
 		kryo.register(TestObject.class);
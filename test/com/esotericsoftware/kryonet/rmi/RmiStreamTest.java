@@ -0,0 +1,238 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryonet.rmi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.KryoNetException;
+import com.esotericsoftware.kryonet.KryoNetTestCase;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Listener.ThreadedListener;
+import com.esotericsoftware.kryonet.Server;
+
+public class RmiStreamTest extends KryoNetTestCase {
+	public void testStream () throws IOException {
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.setStreamChunkSize(10);
+		final QueryImpl query = new QueryImpl();
+		serverObjectSpace.register(42, query);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Query remote = ObjectSpace.getRemoteObject(connection, 42, Query.class);
+				((RemoteObject)remote).setStreamWindow(2);
+
+				// Only a window of chunks is produced ahead of the values consumed.
+				RemoteStream<Integer> stream = remote.range(10000);
+				int consumed = 0;
+				while (stream.hasNext()) {
+					assertEquals(consumed, (int)stream.next());
+					consumed++;
+					assertTrue(query.produced.get() - consumed <= 30);
+				}
+				assertEquals(10000, consumed);
+
+				// Closing a stream stops the remote end producing values.
+				query.produced.set(0);
+				stream = remote.range(1000000);
+				for (int i = 0; i < 5; i++)
+					assertEquals(i, (int)stream.next());
+				stream.close();
+				assertFalse(stream.hasNext());
+				sleep(250);
+				assertTrue(query.produced.get() <= 30);
+				// The remote end closes a stream sent to the end and a stream closed by the caller.
+				assertEquals(2, query.closed.get());
+
+				assertNull(remote.none());
+				assertFalse(remote.range(0).hasNext());
+
+				stream = remote.failing();
+				assertEquals(0, (int)stream.next());
+				try {
+					while (stream.hasNext())
+						stream.next();
+					fail();
+				} catch (KryoNetException expected) {
+				}
+				assertEquals(3, query.closed.get());
+
+				// A stream still open when the connection is removed is closed.
+				stream = remote.range(1000000);
+				assertEquals(0, (int)stream.next());
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+		assertEquals(4, query.closed.get());
+	}
+
+	/** A stream whose caller timed out waiting for it is forgotten without producing values. */
+	public void testExpiry () throws IOException {
+		Server server = new Server();
+		register(server.getKryo());
+		startEndPoint(server);
+		server.bind(tcpPort);
+
+		final ObjectSpace serverObjectSpace = new ObjectSpace();
+		serverObjectSpace.setStreamTimeout(250);
+		final QueryImpl query = new QueryImpl();
+		serverObjectSpace.register(42, query);
+		server.addListener(new Listener() {
+			public void connected (Connection connection) {
+				serverObjectSpace.addConnection(connection);
+			}
+		});
+
+		// ----
+
+		Client client = new Client();
+		register(client.getKryo());
+		startEndPoint(client);
+		client.addListener(new ThreadedListener(new Listener() {
+			public void connected (Connection connection) {
+				Query remote = ObjectSpace.getRemoteObject(connection, 42, Query.class);
+				((RemoteObject)remote).setResponseTimeout(100);
+				try {
+					remote.slowRange(1000);
+					fail();
+				} catch (TimeoutException expected) {
+				}
+				sleep(1000);
+				assertEquals(1, serverObjectSpace.streams.size());
+				assertTrue(serverObjectSpace.streams.values().iterator().next().isEmpty());
+				assertEquals(0, query.produced.get());
+				assertEquals(1, query.closed.get());
+				stopEndPoints();
+			}
+		}));
+		client.connect(5000, host, tcpPort);
+
+		waitForThreads();
+	}
+
+	static void sleep (int millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	static public void register (Kryo kryo) {
+		kryo.register(Query.class);
+		ObjectSpace.registerClasses(kryo);
+	}
+
+	static public interface Query {
+		public RemoteStream<Integer> range (int count);
+
+		public RemoteStream<Integer> failing ();
+
+		public RemoteStream<Integer> none ();
+
+		public RemoteStream<Integer> slowRange (int count);
+	}
+
+	static public class QueryImpl implements Query {
+		final AtomicInteger produced = new AtomicInteger();
+		final AtomicInteger closed = new AtomicInteger();
+
+		public RemoteStream<Integer> range (int count) {
+			return RemoteStream.of(new Range(count));
+		}
+
+		public RemoteStream<Integer> slowRange (int count) {
+			sleep(250);
+			return range(count);
+		}
+
+		public RemoteStream<Integer> failing () {
+			return RemoteStream.of(new Iterator<Integer>() {
+				int i;
+
+				public boolean hasNext () {
+					return true;
+				}
+
+				public Integer next () {
+					if (i == 25) throw new RuntimeException("Query failed.");
+					return i++;
+				}
+
+				public void remove () {
+				}
+			});
+		}
+
+		public RemoteStream<Integer> none () {
+			return null;
+		}
+
+		/** Counts the values produced and the times it is closed, like an iterator backed by a cursor. */
+		class Range implements Iterator<Integer>, Closeable {
+			final int count;
+			int i;
+
+			Range (int count) {
+				this.count = count;
+			}
+
+			public boolean hasNext () {
+				return i < count;
+			}
+
+			public Integer next () {
+				produced.incrementAndGet();
+				return i++;
+			}
+
+			public void remove () {
+			}
+
+			public void close () {
+				closed.incrementAndGet();
+			}
+		}
+	}
+}